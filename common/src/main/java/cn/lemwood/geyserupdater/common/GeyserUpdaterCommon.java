@@ -1,32 +1,77 @@
 package cn.lemwood.geyserupdater.common;
 
 import cn.lemwood.geyserupdater.common.api.UpdateClient;
+import cn.lemwood.geyserupdater.common.cache.FingerprintCache;
 import cn.lemwood.geyserupdater.common.config.ConfigManager;
+import cn.lemwood.geyserupdater.common.config.ConfigSnapshot;
+import cn.lemwood.geyserupdater.common.config.ConfigWatcher;
+import cn.lemwood.geyserupdater.common.coordination.CoordinatedUpdateClient;
+import cn.lemwood.geyserupdater.common.coordination.HostCoordinator;
+import cn.lemwood.geyserupdater.common.coordination.SharedArtifacts;
+import cn.lemwood.geyserupdater.common.download.ArtifactDownloader;
+import cn.lemwood.geyserupdater.common.download.DownloadException;
+import cn.lemwood.geyserupdater.common.download.StagedArtifact;
 import cn.lemwood.geyserupdater.common.geyser.GeyserDownloadClient;
+import cn.lemwood.geyserupdater.common.hash.FileHasher;
+import cn.lemwood.geyserupdater.common.hash.HashAlgorithm;
+import cn.lemwood.geyserupdater.common.http.EndpointSelector;
+import cn.lemwood.geyserupdater.common.index.DirectoryIndex;
+import cn.lemwood.geyserupdater.common.install.InstallLedger;
+import cn.lemwood.geyserupdater.common.http.HttpTransport;
+import cn.lemwood.geyserupdater.common.http.MetadataCache;
+import cn.lemwood.geyserupdater.common.http.RateLimitGovernor;
+import cn.lemwood.geyserupdater.common.http.RequestGuard;
+import cn.lemwood.geyserupdater.common.mirror.MirrorServer;
 import cn.lemwood.geyserupdater.common.modrinth.ModrinthClient;
 import cn.lemwood.geyserupdater.common.platform.PlatformAdapter;
+import cn.lemwood.geyserupdater.common.resolve.CompositeUpdateClient;
+import cn.lemwood.geyserupdater.common.resolve.Resolution;
+import cn.lemwood.geyserupdater.common.resolve.StaleWhileRevalidateClient;
+import cn.lemwood.geyserupdater.common.scheduler.CheckResult;
+import cn.lemwood.geyserupdater.common.scheduler.UpdateScheduler;
+import cn.lemwood.geyserupdater.common.store.ArtifactStore;
+import cn.lemwood.geyserupdater.common.util.AtomicFiles;
 
-import java.io.InputStream;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.concurrent.CompletableFuture;
-import java.nio.charset.Charset;
-
-import java.security.MessageDigest;
+import java.util.concurrent.CompletionException;
 
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.OptionalInt;
 
 public class GeyserUpdaterCommon {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
     private final PlatformAdapter platform;
     private final ConfigManager config;
-    private final UpdateClient client;
+    private final ConfigWatcher configWatcher;
+    private final HttpTransport transport;
+    private final MetadataCache metadataCache;
+    private final RequestGuard guard;
+    private final EndpointSelector modrinthEndpoints;
+    private final EndpointSelector geyserEndpoints;
+    private final ArtifactDownloader downloader;
+    private final FileHasher hasher;
+    private final FingerprintCache fingerprints;
+    private final InstallLedger ledger;
+    private final DirectoryIndex index;
+    // Created in onEnable, so the constructor doesn't hand out this before it is done
+    private UpdateScheduler scheduler;
+    private final HostCoordinator coordinator;
+    private final SharedArtifacts sharedArtifacts;
+    private final ArtifactStore artifactStore;
+    private final RateLimitGovernor modrinthGovernor;
+    private final MirrorServer mirror;
+    private final StaleWhileRevalidateClient client;
     private final String[] projects;
     private final AtomicBoolean restartRequired = new AtomicBoolean(false);
 
@@ -37,29 +82,163 @@ public class GeyserUpdaterCommon {
     public GeyserUpdaterCommon(PlatformAdapter platform, String[] projects) {
         this.platform = platform;
         this.config = new ConfigManager(platform.getDataDirectory());
+        this.configWatcher = new ConfigWatcher(platform, config);
+        this.transport = new HttpTransport();
+        this.metadataCache = new MetadataCache(platform, platform.getDataDirectory().resolve("cache").resolve("http-metadata.json"));
+        this.hasher = new FileHasher();
+        this.guard = new RequestGuard(platform, config, transport);
+        this.modrinthEndpoints = new EndpointSelector(platform, config, guard, "modrinth", ModrinthClient.BASE_URL);
+        this.geyserEndpoints = new EndpointSelector(platform, config, guard, "geyser", GeyserDownloadClient.BASE_URL);
+        this.downloader = new ArtifactDownloader(transport, guard, List.of(geyserEndpoints), hasher, config);
+        this.fingerprints = new FingerprintCache(platform, hasher, platform.getDataDirectory().resolve("cache").resolve("fingerprints.json"));
+        this.index = new DirectoryIndex(platform, config);
+        this.ledger = new InstallLedger(platform, platform.getDataDirectory().resolve("install-ledger.json"));
+        this.coordinator = new HostCoordinator(platform, config);
+        this.artifactStore = new ArtifactStore(platform, config, hasher);
+        this.sharedArtifacts = new SharedArtifacts(coordinator, downloader, artifactStore);
         
-        // Select client based on platform
-        if ("geyser".equals(platform.getModrinthLoader())) {
-            // For Geyser Standalone extension, prefer Geyser Downloads API
-            this.client = new GeyserDownloadClient(platform);
-        } else {
-            this.client = new ModrinthClient(platform, config);
-        }
+        this.modrinthGovernor = new RateLimitGovernor(platform, config, "Modrinth");
+        this.mirror = new MirrorServer(platform, config, transport, modrinthGovernor, hasher,
+                platform.getDataDirectory().resolve("cache").resolve("mirror"));
+
+        // Each project is routed to its sources; by default Geyser Standalone prefers the Geyser Downloads API
+        Map<String, UpdateClient> sources = new LinkedHashMap<>();
+        sources.put(CompositeUpdateClient.MODRINTH, new ModrinthClient(platform, config, transport, modrinthEndpoints,
+                modrinthGovernor, metadataCache, fingerprints, index));
+        sources.put(CompositeUpdateClient.GEYSER, new GeyserDownloadClient(platform, config, transport, geyserEndpoints,
+                metadataCache));
+        UpdateClient upstream = new CompositeUpdateClient(platform, config, sources);
+        // Instances on the same host share one lookup per project when coordination is enabled
+        upstream = new CoordinatedUpdateClient(platform, config, coordinator, upstream);
+        // Serve the last known versions first so startup never waits on the network
+        this.client = new StaleWhileRevalidateClient(platform, config, upstream,
+                platform.getDataDirectory().resolve("cache").resolve("last-known.json"));
         
         this.projects = projects;
     }
 
     public void onEnable() {
         config.load();
+        config.snapshot().warnings().forEach(platform::warn);
+        scheduler = new UpdateScheduler(platform, config, this::checkAll);
+        config.addListener(this::onConfigReload);
+        transport.configure(Duration.ofSeconds(config.getConnectTimeout()), Duration.ofSeconds(config.getRequestTimeout()));
+        // Open connections while the rest of startup runs so the first check doesn't pay
+        // for the TLS handshake. The endpoints depend on the configured mirror, so this
+        // has to wait for the config
+        transport.prewarm(client.getEndpoints());
+
+        if (config.isMirrorServerEnabled()) {
+            startMirror();
+        }
         
         if (!"MANUAL".equalsIgnoreCase(config.getUpdateStrategy())) {
-            platform.runAsync(this::checkAll);
+            scheduler.start();
+        }
+
+        // Read once; turning hot reload on or off takes a restart
+        if (config.isHotReloadEnabled()) {
+            configWatcher.start();
+        }
+    }
+
+    private void startMirror() {
+        try {
+            mirror.start();
+            platform.info(config.getMessage("mirror-started").replace("{address}", String.valueOf(mirror.getAddress())));
+        } catch (java.io.IOException e) {
+            platform.error(config.getMessage("mirror-failed").replace("{error}", e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Applies reloaded settings to the parts that captured them. Everything else reads the
+     * config on every use and picks up the new snapshot by itself.
+     */
+    private void onConfigReload(ConfigSnapshot previous, ConfigSnapshot current) {
+        current.warnings().forEach(platform::warn);
+        if (!previous.network().equals(current.network())) {
+            transport.configure(Duration.ofSeconds(config.getConnectTimeout()), Duration.ofSeconds(config.getRequestTimeout()));
+        }
+        if (!previous.resilience().equals(current.resilience())) {
+            guard.resetBreakers();
+        }
+        if (!previous.mirror().equals(current.mirror())) {
+            mirror.stop();
+            if (current.mirror().serve()) startMirror();
+        }
+        // The last known versions were chosen under the old settings
+        if (previous.allowAlpha() != current.allowAlpha() || previous.allowBeta() != current.allowBeta()
+                || !previous.resolutionMode().equalsIgnoreCase(current.resolutionMode())
+                || !previous.sources().equals(current.sources())
+                || !previous.endpoints().equals(current.endpoints())
+                || !java.util.Objects.equals(previous.mirror().url(), current.mirror().url())) {
+            client.expire();
+        }
+
+        boolean wasManual = "MANUAL".equalsIgnoreCase(previous.updateStrategy());
+        boolean manual = "MANUAL".equalsIgnoreCase(current.updateStrategy());
+        if (manual && !wasManual) {
+            scheduler.stop();
+        } else if (!manual && wasManual) {
+            scheduler.start();
+        } else if (!previous.scheduler().equals(current.scheduler())) {
+            scheduler.reschedule();
         }
     }
 
-    public void checkAll() {
-        List<CompletableFuture<Void>> futures = new ArrayList<>();
+    public void onDisable() {
+        configWatcher.close();
+        if (scheduler != null) scheduler.stop();
+        mirror.stop();
+        index.close();
+        transport.close();
+        fingerprints.save();
+        metadataCache.save();
+        hasher.close();
+    }
+
+    /**
+     * Checks every project now against fresh metadata, downloading updates regardless of
+     * maintenance windows. Used by the check command, so the check is started on the
+     * platform's async executor rather than on the calling server thread.
+     */
+    public CompletableFuture<CheckResult> checkAll() {
+        CompletableFuture<CheckResult> result = new CompletableFuture<>();
+        // Even before its first request a check reads the ledger, jars and lock files
+        platform.runAsync(() -> {
+            try {
+                checkAll(true, true).whenComplete((checked, error) -> {
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else {
+                        result.complete(checked);
+                    }
+                });
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Checks every project for updates.
+     * @param allowDownload false to only report updates, e.g. outside a maintenance window
+     * @param revalidate true to wait for fresh metadata instead of answering from the last known versions;
+     *                   projects whose refresh failed then count as failed even if a stale version was used
+     */
+    public CompletableFuture<CheckResult> checkAll(boolean allowDownload, boolean revalidate) {
+        Map<String, Boolean> toCheck = new LinkedHashMap<>();
+        Map<String, String> installedVersions = new HashMap<>();
         for (String project : projects) {
+            // An unchanged ledger entry answers both questions with a single stat
+            InstallLedger.Entry recorded = ledger.current(project);
+            if (recorded != null) {
+                toCheck.put(project, true);
+                installedVersions.put(project, recorded.getVersion());
+                continue;
+            }
             boolean isInstalled = platform.isProjectInstalled(project);
             String installedVersion = platform.getInstalledVersion(project);
             
@@ -68,28 +247,85 @@ public class GeyserUpdaterCommon {
                     if (config.isDebug()) {
                         platform.info(config.getMessage("auto-install-checking").replace("{project}", project));
                     }
-                    futures.add(checkProject(project, null, false));
+                    toCheck.put(project, false);
                 } else if (config.isDebug()) {
                     platform.info(config.getMessage("not-installed-skipping").replace("{project}", project));
                 }
                 continue;
             }
             
-            futures.add(checkProject(project, installedVersion, true));
+            toCheck.put(project, true);
+            installedVersions.put(project, installedVersion);
         }
         
-        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
-            .thenRun(() -> {
-                if (restartRequired.get()) {
+        // Resolve every project in as few requests as the client allows, then fan the
+        // results back out to the per-project pipeline
+        CompletableFuture<Map<String, UpdateClient.UpdateVersion>> latest;
+        if (toCheck.isEmpty()) {
+            latest = CompletableFuture.completedFuture(Map.of());
+        } else if (revalidate) {
+            latest = client.revalidate(toCheck.keySet());
+        } else {
+            latest = client.getLatestVersions(toCheck.keySet());
+        }
+        List<CompletableFuture<Outcome>> futures = new ArrayList<>();
+        toCheck.forEach((project, isInstalled) -> futures.add(
+                checkProject(project, installedVersions.get(project), isInstalled, allowDownload,
+                        latest.thenApply(m -> m.get(project)))
+                        .thenApply(outcome -> revalidate && outcome != Outcome.FAILED
+                                && client.getCached(project).freshness() != Resolution.Freshness.FRESH
+                                ? Outcome.FAILED : outcome)
+                        .exceptionally(t -> {
+                            Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+                            platform.error(config.getMessage("error")
+                                    .replace("{project}", project)
+                                    .replace("{error}", String.valueOf(cause.getMessage())), cause);
+                            return Outcome.FAILED;
+                        })));
+        
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+            .thenApply(v -> {
+                fingerprints.save();
+                metadataCache.save();
+                if (config.isDebug()) {
+                    platform.info(hasher.getThroughputReport());
+                }
+                // Cleared so the next check doesn't schedule the same restart again
+                if (restartRequired.getAndSet(false)) {
                     scheduleRestart();
                 }
+                int failed = 0;
+                int deferred = 0;
+                for (CompletableFuture<Outcome> future : futures) {
+                    switch (future.join()) {
+                        case FAILED -> failed++;
+                        case DEFERRED -> deferred++;
+                        default -> {
+                        }
+                    }
+                }
+                return new CheckResult(failed, deferred);
             });
     }
 
-    private CompletableFuture<Void> checkProject(String project, String installedVersion, boolean isInstalled) {
+    private enum Outcome {
+        DONE, FAILED, DEFERRED
+    }
+
+    private CompletableFuture<Outcome> checkProject(String project, String installedVersion, boolean isInstalled,
+                                                    boolean allowDownload,
+                                                    CompletableFuture<UpdateClient.UpdateVersion> latest) {
         platform.info(config.getMessage("checking-updates").replace("{project}", project));
-        return client.getLatestVersion(project).thenCompose(version -> {
-            if (version == null) return CompletableFuture.completedFuture(null);
+        return latest.thenCompose(version -> {
+            if (version == null) return CompletableFuture.completedFuture(Outcome.FAILED);
+
+            if (isInstalled && ledger.isCurrent(project, version)) {
+                // The ledger already has this exact file installed, and the jar hasn't been touched since
+                if (config.isDebug()) {
+                    platform.info("Install ledger shows " + project + " " + version.versionNumber + " is installed");
+                }
+                return CompletableFuture.completedFuture(Outcome.DONE);
+            }
             
             // If installed version is null (missing file), we should treat it as an update if auto-install is enabled
             // But wait, we already handled auto-install logic in checkAll.
@@ -98,6 +334,41 @@ public class GeyserUpdaterCommon {
             boolean isUpdate = isInstalled;
             boolean shouldDownload = false;
             
+            if (isUpdate && config.isHashResolution() && version.getPreferredHashAlgorithm() != null) {
+                // The checksum identifies the exact file, so a match needs no version comparison.
+                // The installed jar's hash is normally already cached, making this check free.
+                return isFileUpToDate(project, version, true).thenCompose(upToDate -> {
+                    if (upToDate) {
+                        if (config.isDebug()) {
+                            platform.info(config.getMessage("no-update").replace("{project}", project));
+                        }
+                        return CompletableFuture.completedFuture(Outcome.DONE);
+                    }
+                    // A different file isn't necessarily a newer one, e.g. a dev build the API doesn't know.
+                    // If the versions can't be ordered, only a successor named for the exact installed
+                    // file is taken; the newest listed version might be older
+                    OptionalInt order = platform.compareInstalled(project, version.versionNumber);
+                    if (order.isPresent() ? order.getAsInt() <= 0 : !version.supersedesInstalled) {
+                        if (order.isEmpty()) {
+                            platform.info(config.getMessage("unknown-installed-file")
+                                    .replace("{project}", project)
+                                    .replace("{version}", version.versionNumber));
+                        } else if (config.isDebug()) {
+                            platform.info("Installed " + project + " (" + installedVersion + ") differs from "
+                                    + version.versionNumber + " but is not older, keeping it");
+                        }
+                        return CompletableFuture.completedFuture(Outcome.DONE);
+                    }
+                    platform.info(config.getMessage("update-found")
+                            .replace("{project}", project)
+                            .replace("{version}", version.versionNumber));
+                    if ("AUTO".equalsIgnoreCase(config.getUpdateStrategy())) {
+                        return download(project, version, true, allowDownload);
+                    }
+                    return CompletableFuture.completedFuture(Outcome.DONE);
+                });
+            }
+            
             if (!isUpdate) {
                 // File missing - auto install case
                 platform.info(config.getMessage("found-latest")
@@ -106,7 +377,7 @@ public class GeyserUpdaterCommon {
                 shouldDownload = true;
             } else {
                 // File exists - check if update is needed
-                boolean versionDifferent = platform.compareVersion(project, version.versionNumber);
+                boolean remoteNewer = platform.compareVersion(project, version.versionNumber);
                 
                 if (installedVersion == null) {
                     // Platform can't determine version, rely on hash check
@@ -114,16 +385,16 @@ public class GeyserUpdaterCommon {
                         platform.info("Cannot determine installed version for " + project + ", will check file hash");
                     }
                     shouldDownload = true;
-                } else if (versionDifferent) {
-                    // Version strings are different
+                } else if (remoteNewer) {
+                    // Remote is newer, or can't be ordered against the installed version
                     platform.info(config.getMessage("update-found")
                             .replace("{project}", project)
                             .replace("{version}", version.versionNumber));
                     shouldDownload = true;
                 } else {
-                    // Version strings match
+                    // Installed is the same or newer
                     if (config.isDebug()) {
-                        platform.info("Version strings match for " + project + " (" + installedVersion + "), no update needed");
+                        platform.info("Installed " + project + " (" + installedVersion + ") is not older than " + version.versionNumber + ", no update needed");
                     }
                     shouldDownload = false;
                 }
@@ -131,31 +402,47 @@ public class GeyserUpdaterCommon {
             
             if (shouldDownload && "AUTO".equalsIgnoreCase(config.getUpdateStrategy())) {
                 // Always check hash before downloading to avoid duplicate downloads
-                if (isFileUpToDate(project, version, isUpdate)) {
+                return isFileUpToDate(project, version, isUpdate).thenCompose(upToDate -> {
+                    if (!upToDate) {
+                        return download(project, version, isUpdate, allowDownload);
+                    }
                     if (config.isDebug()) {
                         platform.info(config.getMessage("no-update").replace("{project}", project));
                     }
-                } else {
-                    return downloadUpdate(project, version, isUpdate);
-                }
+                    return CompletableFuture.completedFuture(Outcome.DONE);
+                });
             } else if (!shouldDownload && config.isDebug()) {
                 platform.info(config.getMessage("no-update").replace("{project}", project));
             }
-            return CompletableFuture.completedFuture(null);
+            return CompletableFuture.completedFuture(Outcome.DONE);
         });
     }
 
-    private boolean isFileUpToDate(String project, UpdateClient.UpdateVersion version, boolean isUpdate) {
-        if (version.sha256 == null) {
+    private CompletableFuture<Outcome> download(String project, UpdateClient.UpdateVersion version,
+                                                boolean isUpdate, boolean allowDownload) {
+        if (!allowDownload) {
+            ZonedDateTime open = scheduler.getNextWindowStart(ZonedDateTime.now());
+            platform.info(config.getMessage("download-deferred")
+                    .replace("{project}", project)
+                    .replace("{time}", open != null ? TIME_FORMAT.format(open) : "?"));
+            return CompletableFuture.completedFuture(Outcome.DEFERRED);
+        }
+        return downloadUpdate(project, version, isUpdate).thenApply(ok -> ok ? Outcome.DONE : Outcome.FAILED);
+    }
+
+    private CompletableFuture<Boolean> isFileUpToDate(String project, UpdateClient.UpdateVersion version, boolean isUpdate) {
+        HashAlgorithm algorithm = version.getPreferredHashAlgorithm();
+        if (algorithm == null) {
             if (config.isDebug()) {
-                platform.info("No SHA256 available for " + project + ", assuming update needed.");
+                platform.info("No checksum available for " + project + ", assuming update needed.");
             }
-            return false; 
+            return CompletableFuture.completedFuture(false);
         }
+        String remoteHash = version.getHash(algorithm);
         
         // First check the installed directory for any matching jar file
         Path installedFolder = platform.getDownloadFolder(project, false);
-        Path installedFile = platform.findInstalledJar(project, installedFolder);
+        Path installedFile = index.find(project, installedFolder);
         
         if (config.isDebug()) {
             platform.info("Checking for installed file of " + project + " in " + installedFolder);
@@ -164,129 +451,168 @@ public class GeyserUpdaterCommon {
             }
         }
         
-        // Check if the installed file matches the remote hash
+        // Check the installed file and, for Paper, an already downloaded update.
+        // Both candidates are hashed in parallel on the hasher pool.
+        List<CompletableFuture<Boolean>> candidates = new ArrayList<>();
         if (installedFile != null && Files.exists(installedFile)) {
-            try {
-                String localHash = calculateSha256(installedFile);
-                if (config.isDebug()) {
-                    platform.info("Installed file hash: " + localHash + ", remote hash: " + version.sha256);
-                }
-                
-                if (localHash.equalsIgnoreCase(version.sha256)) {
-                    if (config.isDebug()) {
-                        platform.info("Installed file is already up to date");
-                    }
-                    return true;
-                }
-            } catch (Exception e) {
-                platform.warn("Failed to calculate hash for installed file: " + e.getMessage());
-            }
+            candidates.add(matchesHash(installedFile, algorithm, remoteHash, "installed file").thenApply(match -> {
+                // Found by hashing, e.g. installed by hand; the ledger can vouch for it from now on
+                if (match) ledger.record(project, version, installedFile, algorithm, remoteHash);
+                return match;
+            }));
         }
-        
-        // For Paper platform, also check if we already downloaded the update
         if (isUpdate) {
             Path updateFolder = platform.getDownloadFolder(project, true);
             if (!updateFolder.equals(installedFolder)) {
                 // Check exact filename in update folder
                 Path potentialUpdateFile = updateFolder.resolve(version.filename);
                 if (Files.exists(potentialUpdateFile)) {
-                    try {
-                        String localHash = calculateSha256(potentialUpdateFile);
-                        if (localHash.equalsIgnoreCase(version.sha256)) {
-                            if (config.isDebug()) {
-                                platform.info("Update already downloaded at " + potentialUpdateFile);
-                            }
-                            return true;
-                        }
-                    } catch (Exception e) {
-                        platform.warn("Failed to calculate hash for update file: " + e.getMessage());
-                    }
+                    candidates.add(matchesHash(potentialUpdateFile, algorithm, remoteHash, "update file"));
                 }
             }
         }
         
-        return false;
-    }
-    
-    private String calculateSha256(Path path) throws java.io.IOException, java.security.NoSuchAlgorithmException {
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        try (InputStream fis = Files.newInputStream(path)) {
-            byte[] buffer = new byte[8192];
-            int n = 0;
-            while ((n = fis.read(buffer)) != -1) {
-                digest.update(buffer, 0, n);
-            }
-        }
-        byte[] hash = digest.digest();
-        StringBuilder hexString = new StringBuilder();
-        for (byte b : hash) {
-            String hex = Integer.toHexString(0xff & b);
-            if (hex.length() == 1) hexString.append('0');
-            hexString.append(hex);
-        }
-        return hexString.toString();
+        return CompletableFuture.allOf(candidates.toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> candidates.stream().anyMatch(CompletableFuture::join));
     }
 
-    public CompletableFuture<Void> downloadUpdate(String project, UpdateClient.UpdateVersion version, boolean isUpdate) {
+    private CompletableFuture<Boolean> matchesHash(Path file, HashAlgorithm algorithm, String remoteHash, String description) {
+        return fingerprints.getHashAsync(file, algorithm)
+                .thenApply(localHash -> {
+                    if (config.isDebug()) {
+                        platform.info("Hash of " + description + " " + file.getFileName() + ": " + localHash + ", remote hash: " + remoteHash);
+                    }
+                    return localHash.equalsIgnoreCase(remoteHash);
+                })
+                .exceptionally(e -> {
+                    platform.warn("Failed to calculate hash for " + description + ": " + e.getMessage());
+                    return false;
+                });
+    }
+    
+    public CompletableFuture<Boolean> downloadUpdate(String project, UpdateClient.UpdateVersion version, boolean isUpdate) {
         platform.info(config.getMessage("downloading").replace("{project}", project));
         
-        HttpClient httpClient = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest.newBuilder().uri(URI.create(version.downloadUrl)).build();
+        Path target = platform.getDownloadFolder(project, isUpdate).resolve(version.filename);
         
-        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
-                .thenAccept(response -> {
-                    if (response.statusCode() == 200) {
-                        Path tempFile = null;
-                        try (InputStream in = response.body()) {
-                            tempFile = Files.createTempFile("geyserupdater-", ".tmp");
-                            Files.copy(in, tempFile, StandardCopyOption.REPLACE_EXISTING);
-                            
-                            Path target = platform.getDownloadFolder(project, isUpdate).resolve(version.filename);
-                            Files.createDirectories(target.getParent());
-                            
-                            try {
-                                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
-                                platform.info(config.getMessage("success").replace("{project}", project));
-                                
-                                if (config.isAutoRestartEnabled() && config.isRestartTrigger(project)) {
-                                    platform.info(config.getMessage("restart-trigger").replace("{project}", project));
-                                    restartRequired.set(true);
-                                }
-                            } catch (java.io.IOException e) {
-                                // Fallback for file locking
-                                platform.warn(config.getMessage("file-locked-warning").replace("{error}", e.getMessage()));
-                                Path fallback = target.resolveSibling(target.getFileName().toString() + ".new");
-                                platform.info(config.getMessage("saving-fallback").replace("{file}", fallback.getFileName().toString()));
-                                Files.move(tempFile, fallback, StandardCopyOption.REPLACE_EXISTING);
-                                
-                                if (config.isShutdownScriptEnabled() || (config.isAutoRestartEnabled() && config.isRestartTrigger(project))) {
-                                    if (config.isAutoRestartEnabled() && config.isRestartTrigger(project)) {
-                                        restartRequired.set(true);
-                                    }
-                                    createShutdownScript(fallback, target);
-                                } else {
-                                    platform.info(config.getMessage("saved-fallback-manual").replace("{file}", fallback.getFileName().toString()));
-                                }
-                            }
-                        } catch (Exception e) {
-                            platform.error(config.getMessage("error")
-                                    .replace("{project}", project)
-                                    .replace("{error}", e.getMessage()), e);
-                        } finally {
-                             if (tempFile != null) {
-                                 try { Files.deleteIfExists(tempFile); } catch (Exception ignored) {}
-                             }
-                        }
+        Path targetDir = target.getParent();
+        CompletableFuture<StagedArtifact> fetched = coordinator.isEnabled()
+                ? sharedArtifacts.fetch(version, targetDir)
+                : artifactStore.fetch(version, targetDir, () -> downloader.download(version, targetDir));
+        return fetched
+                .thenApply(staged -> {
+                    Path installed = installStaged(project, staged, target);
+                    if (target.equals(installed)) {
+                        ledger.record(project, version, target, staged.algorithm(), staged.hash());
+                    }
+                    // Saved as .new counts as done; it is swapped in on the next restart
+                    return installed != null;
+                })
+                .exceptionally(t -> {
+                    Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+                    if (cause instanceof DownloadException de && de.getStatusCode() > 0) {
+                        platform.error(config.getMessage("download-failed").replace("{status}", String.valueOf(de.getStatusCode())));
+                    } else if (cause instanceof DownloadException) {
+                        platform.error(config.getMessage("checksum-mismatch")
+                                .replace("{project}", project)
+                                .replace("{error}", cause.getMessage()));
                     } else {
-                        platform.error(config.getMessage("download-failed").replace("{status}", String.valueOf(response.statusCode())));
+                        platform.error(config.getMessage("error")
+                                .replace("{project}", project)
+                                .replace("{error}", String.valueOf(cause.getMessage())), cause);
                     }
+                    return false;
                 });
     }
+
+    /**
+     * @return {@code target}, or the {@code .new} file next to it if {@code target} was locked,
+     *         or null if the artifact could not be saved at all
+     */
+    private Path installStaged(String project, StagedArtifact artifact, Path target) {
+        Path staged = artifact.file();
+        try {
+            try {
+                AtomicFiles.move(staged, target);
+                fingerprints.put(target, artifact.algorithm(), artifact.hash());
+                artifactStore.addReference(artifact.algorithm(), artifact.hash(), target);
+                platform.info(config.getMessage("success").replace("{project}", project));
+                
+                if (config.isAutoRestartEnabled() && config.isRestartTrigger(project)) {
+                    platform.info(config.getMessage("restart-trigger").replace("{project}", project));
+                    restartRequired.set(true);
+                }
+                return target;
+            } catch (java.io.IOException e) {
+                // Fallback for file locking
+                platform.warn(config.getMessage("file-locked-warning").replace("{error}", e.getMessage()));
+                Path fallback = target.resolveSibling(target.getFileName().toString() + ".new");
+                platform.info(config.getMessage("saving-fallback").replace("{file}", fallback.getFileName().toString()));
+                AtomicFiles.move(staged, fallback);
+                artifactStore.addReference(artifact.algorithm(), artifact.hash(), fallback);
+                
+                if (config.isShutdownScriptEnabled() || (config.isAutoRestartEnabled() && config.isRestartTrigger(project))) {
+                    if (config.isAutoRestartEnabled() && config.isRestartTrigger(project)) {
+                        restartRequired.set(true);
+                    }
+                    createShutdownScript(fallback, target);
+                } else {
+                    platform.info(config.getMessage("saved-fallback-manual").replace("{file}", fallback.getFileName().toString()));
+                }
+                return fallback;
+            }
+        } catch (Exception e) {
+            platform.error(config.getMessage("error")
+                    .replace("{project}", project)
+                    .replace("{error}", e.getMessage()), e);
+        } finally {
+            try { Files.deleteIfExists(staged); } catch (Exception ignored) {}
+        }
+        return null;
+    }
     
+    /**
+     * Describes the last known version of every tracked project, answered from memory.
+     */
+    public List<String> getStatus() {
+        List<String> lines = new ArrayList<>();
+        for (String project : projects) {
+            Resolution resolution = client.getCached(project);
+            if (resolution.version() == null) {
+                lines.add(config.getMessage("status-unknown").replace("{project}", project));
+                continue;
+            }
+            String key = resolution.freshness() == Resolution.Freshness.FRESH ? "status-fresh" : "status-stale";
+            long minutes = Duration.ofMillis(System.currentTimeMillis() - resolution.fetchedAt()).toMinutes();
+            lines.add(config.getMessage(key)
+                    .replace("{project}", project)
+                    .replace("{version}", resolution.version().versionNumber)
+                    .replace("{minutes}", String.valueOf(minutes)));
+        }
+        ZonedDateTime nextCheck = scheduler != null ? scheduler.getNextCheck() : null;
+        if (nextCheck != null) {
+            lines.add(config.getMessage("status-next-check").replace("{time}", TIME_FORMAT.format(nextCheck)));
+        }
+        guard.getBreakerStates().forEach((host, state) -> lines.add(config.getMessage("status-endpoint")
+                .replace("{host}", host)
+                .replace("{state}", state.name())));
+        for (EndpointSelector selector : List.of(modrinthEndpoints, geyserEndpoints)) {
+            selector.getSummaries().forEach((base, summary) -> lines.add(config.getMessage("status-latency")
+                    .replace("{endpoint}", base)
+                    .replace("{latency}", String.valueOf(summary.latencyMillis()))
+                    .replace("{p95}", summary.p95Millis() < 0 ? "-" : String.valueOf(summary.p95Millis()))));
+        }
+        return lines;
+    }
+
     public ConfigManager getConfig() {
         return config;
     }
 
+    public DirectoryIndex getDirectoryIndex() {
+        return index;
+    }
+
     private void scheduleRestart() {
         // This method might be called multiple times if multiple projects update.
         // We should ensure we only schedule once. 
@@ -464,7 +790,7 @@ public class GeyserUpdaterCommon {
     private void scheduleScriptExecution(Path scriptPath, boolean isWindows) {
         try {
             if (isWindows) {
-                Runtime.getRuntime().exec("cmd /c start /min \"\" \"" + scriptPath.toAbsolutePath() + "\"");
+                Runtime.getRuntime().exec(new String[]{"cmd", "/c", "start", "/min", "\"\"", "\"" + scriptPath.toAbsolutePath() + "\""});
             } else {
                 Runtime.getRuntime().exec(new String[]{"sh", "-c", "nohup \"" + scriptPath.toAbsolutePath() + "\" > /dev/null 2>&1 &"});
             }
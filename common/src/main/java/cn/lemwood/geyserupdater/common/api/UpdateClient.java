@@ -1,14 +1,80 @@
 package cn.lemwood.geyserupdater.common.api;
 
+import cn.lemwood.geyserupdater.common.hash.HashAlgorithm;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 public interface UpdateClient {
     CompletableFuture<UpdateVersion> getLatestVersion(String projectId);
 
+    /**
+     * Resolves several projects at once. Clients whose API supports bulk lookups override
+     * this to use fewer round trips; the default simply resolves each project in parallel.
+     * @return project ID to latest version; projects that could not be resolved map to null
+     */
+    default CompletableFuture<Map<String, UpdateVersion>> getLatestVersions(Collection<String> projectIds) {
+        List<String> ids = new ArrayList<>(projectIds);
+        List<CompletableFuture<UpdateVersion>> futures = new ArrayList<>();
+        for (String id : ids) {
+            futures.add(getLatestVersion(id).exceptionally(e -> null));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            Map<String, UpdateVersion> result = new HashMap<>();
+            for (int i = 0; i < ids.size(); i++) {
+                result.put(ids.get(i), futures.get(i).join());
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Returns the endpoints this client talks to, used to pre-warm connections.
+     */
+    default Collection<URI> getEndpoints() {
+        return List.of();
+    }
+
     class UpdateVersion {
         public String versionNumber;
         public String downloadUrl;
         public String filename;
         public String sha256;
+        public String sha1;
+        public String sha512;
+        /** Size of the file in bytes, or -1 if the source does not say. */
+        public long size = -1;
+        /** Build number on the Geyser Downloads API, or -1 for sources without builds. */
+        public int build = -1;
+        /** Name of the source that resolved this version, e.g. {@code modrinth}. */
+        public String source;
+        /**
+         * True if the source named this version as the successor of the exact installed file,
+         * e.g. by looking up its checksum; false if it is just the newest listed version.
+         */
+        public boolean supersedesInstalled;
+
+        /**
+         * @return the strongest checksum algorithm the source advertised, or null if none
+         */
+        public HashAlgorithm getPreferredHashAlgorithm() {
+            if (sha512 != null) return HashAlgorithm.SHA512;
+            if (sha256 != null) return HashAlgorithm.SHA256;
+            if (sha1 != null) return HashAlgorithm.SHA1;
+            return null;
+        }
+
+        public String getHash(HashAlgorithm algorithm) {
+            return switch (algorithm) {
+                case SHA1 -> sha1;
+                case SHA256 -> sha256;
+                case SHA512 -> sha512;
+            };
+        }
     }
 }
@@ -0,0 +1,187 @@
+package cn.lemwood.geyserupdater.common.cache;
+
+import cn.lemwood.geyserupdater.common.hash.FileHasher;
+import cn.lemwood.geyserupdater.common.hash.HashAlgorithm;
+import cn.lemwood.geyserupdater.common.platform.PlatformAdapter;
+import cn.lemwood.geyserupdater.common.util.AtomicFiles;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent cache of file hashes, keyed by path and invalidated by size, mtime and file key.
+ * <p>
+ * Installed jars rarely change between checks, so re-reading tens of megabytes on every
+ * startup is wasted I/O. A hash is only recomputed when the file's attributes differ from
+ * the ones recorded alongside it.
+ */
+public class FingerprintCache {
+    private static final int FORMAT_VERSION = 1;
+
+    private final PlatformAdapter platform;
+    private final FileHasher hasher;
+    private final Path cacheFile;
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private volatile Map<String, Entry> entries;
+    private volatile boolean dirty;
+
+    public FingerprintCache(PlatformAdapter platform, FileHasher hasher, Path cacheFile) {
+        this.platform = platform;
+        this.hasher = hasher;
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Returns the hash of a file, reusing the cached value if the file is unchanged.
+     * @param file The file to hash
+     * @param algorithm The checksum algorithm
+     * @return lowercase hex digest
+     */
+    public String getHash(Path file, HashAlgorithm algorithm) throws IOException {
+        String cached = getCachedHash(file, algorithm);
+        if (cached != null) return cached;
+        String hash = hasher.hash(file, algorithm);
+        put(file, algorithm, hash);
+        return hash;
+    }
+
+    /**
+     * Like {@link #getHash}, but a cache miss is hashed on the hasher's pool so several
+     * files can be fingerprinted in parallel.
+     */
+    public CompletableFuture<String> getHashAsync(Path file, HashAlgorithm algorithm) {
+        try {
+            String cached = getCachedHash(file, algorithm);
+            if (cached != null) return CompletableFuture.completedFuture(cached);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return hasher.hashAsync(file, algorithm).thenApply(hash -> {
+            put(file, algorithm, hash);
+            return hash;
+        });
+    }
+
+    private String getCachedHash(Path file, HashAlgorithm algorithm) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        Entry entry = entries().get(key(file));
+        if (entry != null && entry.matches(attrs)) {
+            return entry.hashes.get(algorithm.getKey());
+        }
+        return null;
+    }
+
+    /**
+     * Records a hash that is already known, e.g. for a file that was verified while downloading.
+     */
+    public void put(Path file, HashAlgorithm algorithm, String hash) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            String key = key(file);
+            Map<String, Entry> map = entries();
+            Entry entry = map.get(key);
+            if (entry == null || !entry.matches(attrs)) {
+                entry = Entry.of(attrs);
+            }
+            entry.hashes.put(algorithm.getKey(), hash.toLowerCase());
+            map.put(key, entry);
+            dirty = true;
+        } catch (IOException ignored) {
+            // Not worth failing an install over; the file will simply be hashed next time
+        }
+    }
+
+    /**
+     * Writes the cache to disk if anything changed since the last save.
+     */
+    public synchronized void save() {
+        if (!dirty || entries == null) return;
+        // Drop entries whose files have gone away so the cache doesn't grow forever
+        entries.keySet().removeIf(path -> !Files.exists(Path.of(path)));
+        CacheFile data = new CacheFile();
+        data.version = FORMAT_VERSION;
+        data.entries = entries;
+        try {
+            AtomicFiles.writeString(cacheFile, gson.toJson(data));
+            dirty = false;
+        } catch (IOException e) {
+            platform.warn("Failed to save fingerprint cache: " + e.getMessage());
+        }
+    }
+
+    private Map<String, Entry> entries() {
+        Map<String, Entry> map = entries;
+        if (map == null) {
+            synchronized (this) {
+                map = entries;
+                if (map == null) {
+                    map = load();
+                    entries = map;
+                }
+            }
+        }
+        return map;
+    }
+
+    private Map<String, Entry> load() {
+        Map<String, Entry> map = new ConcurrentHashMap<>();
+        try {
+            CacheFile data = gson.fromJson(Files.readString(cacheFile, StandardCharsets.UTF_8), CacheFile.class);
+            if (data != null && data.version == FORMAT_VERSION && data.entries != null) {
+                data.entries.forEach((path, entry) -> {
+                    if (entry != null && entry.hashes != null) {
+                        entry.hashes = new ConcurrentHashMap<>(entry.hashes);
+                        map.put(path, entry);
+                    }
+                });
+            }
+        } catch (NoSuchFileException ignored) {
+        } catch (IOException | JsonParseException e) {
+            // A corrupt cache is only an optimisation lost; start over and rewrite it on the next save
+            platform.warn("Fingerprint cache is unreadable, rebuilding: " + e.getMessage());
+            dirty = true;
+        }
+        return map;
+    }
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    private static class CacheFile {
+        int version;
+        Map<String, Entry> entries;
+    }
+
+    private static class Entry {
+        long size;
+        long mtime;
+        String fileKey;
+        Map<String, String> hashes = new ConcurrentHashMap<>();
+
+        static Entry of(BasicFileAttributes attrs) {
+            Entry entry = new Entry();
+            entry.size = attrs.size();
+            entry.mtime = attrs.lastModifiedTime().toMillis();
+            entry.fileKey = attrs.fileKey() == null ? null : attrs.fileKey().toString();
+            return entry;
+        }
+
+        boolean matches(BasicFileAttributes attrs) {
+            return size == attrs.size()
+                    && mtime == attrs.lastModifiedTime().toMillis()
+                    && Objects.equals(fileKey, attrs.fileKey() == null ? null : attrs.fileKey().toString());
+        }
+    }
+}
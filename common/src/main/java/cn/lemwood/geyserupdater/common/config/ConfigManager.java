@@ -1,25 +1,40 @@
 package cn.lemwood.geyserupdater.common.config;
 
+import cn.lemwood.geyserupdater.common.scheduler.MaintenanceWindow;
+
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import org.yaml.snakeyaml.Yaml;
 import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.util.LinkedHashMap;
 
 public class ConfigManager {
+    /**
+     * Told about every reload that changed anything.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void onReload(ConfigSnapshot previous, ConfigSnapshot current);
+    }
+
+    private final Path dataFolder;
     private final Path configPath;
     private final Path messagesPath;
-    private Map<String, Object> config;
-    private Map<String, Object> messages;
+    private final java.util.List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile ConfigSnapshot snapshot;
 
     public ConfigManager(Path dataFolder) {
+        this.dataFolder = dataFolder;
         this.configPath = dataFolder.resolve("config.yml");
         this.messagesPath = dataFolder.resolve("messages.yml");
+        this.snapshot = ConfigSnapshot.parse(Map.of(), Map.of(), dataFolder);
     }
 
     public void load() {
@@ -30,23 +45,69 @@ public class ConfigManager {
             saveResource("messages.yml", messagesPath);
         }
         
-        try (InputStream in = new FileInputStream(configPath.toFile())) {
-            Yaml yaml = new Yaml();
-            config = yaml.load(in);
-            if (config == null) config = new HashMap<>();
+        Map<String, Object> config;
+        try {
+            config = readYaml(configPath);
         } catch (Exception e) {
             e.printStackTrace();
             config = new HashMap<>();
         }
 
-        try (InputStream in = new FileInputStream(messagesPath.toFile())) {
-            Yaml yaml = new Yaml();
-            messages = yaml.load(in);
-            if (messages == null) messages = new HashMap<>();
+        Map<String, Object> messages;
+        try {
+            messages = readYaml(messagesPath);
         } catch (Exception e) {
             e.printStackTrace();
             messages = new HashMap<>();
         }
+        snapshot = ConfigSnapshot.parse(config, messages, dataFolder);
+    }
+
+    /**
+     * Parses both files again and swaps in the result. Unlike {@link #load}, a file that fails
+     * to parse, e.g. one saved halfway through an edit, leaves the current settings in place.
+     * Listeners are told if anything changed.
+     * @return true if the settings changed
+     * @throws Exception if either file cannot be read or parsed
+     */
+    public boolean reload() throws Exception {
+        ConfigSnapshot next = ConfigSnapshot.parse(readYaml(configPath), readYaml(messagesPath), dataFolder);
+        ConfigSnapshot previous;
+        synchronized (this) {
+            previous = snapshot;
+            if (previous.equals(next)) return false;
+            snapshot = next;
+        }
+        for (Listener listener : listeners) {
+            listener.onReload(previous, next);
+        }
+        return true;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @return the current settings; hold on to it to read several values that belong together
+     */
+    public ConfigSnapshot snapshot() {
+        return snapshot;
+    }
+
+    public Path getConfigPath() {
+        return configPath;
+    }
+
+    public Path getMessagesPath() {
+        return messagesPath;
+    }
+
+    private static Map<String, Object> readYaml(Path path) throws IOException {
+        try (InputStream in = new FileInputStream(path.toFile())) {
+            Map<String, Object> data = new Yaml().load(in);
+            return data != null ? data : new HashMap<>();
+        }
     }
 
     private void saveResource(String resourceName, Path targetPath) {
@@ -67,7 +128,9 @@ public class ConfigManager {
     private void saveDefaultConfigFallback() {
         Map<String, Object> defaultMap = new LinkedHashMap<>();
         defaultMap.put("debug", false);
+        defaultMap.put("hot-reload", true);
         defaultMap.put("update-strategy", "AUTO"); 
+        defaultMap.put("resolution-mode", "HASH");
         defaultMap.put("allow-alpha", true);
         defaultMap.put("allow-beta", true);
         defaultMap.put("enable-shutdown-script", false);
@@ -77,6 +140,74 @@ public class ConfigManager {
         autoInstall.put("floodgate", false);
         autoInstall.put("geyserextras", false);
         defaultMap.put("auto-install", autoInstall);
+
+        Map<String, Object> network = new LinkedHashMap<>();
+        network.put("connect-timeout", 10);
+        network.put("request-timeout", 30);
+        network.put("download-segments", 4);
+        defaultMap.put("network", network);
+
+        Map<String, Object> metadataCache = new LinkedHashMap<>();
+        metadataCache.put("ttl-minutes", 30);
+        metadataCache.put("max-age-hours", 72);
+        defaultMap.put("metadata-cache", metadataCache);
+
+        Map<String, Object> scheduler = new LinkedHashMap<>();
+        scheduler.put("enabled", true);
+        scheduler.put("interval-minutes", 360);
+        scheduler.put("jitter-minutes", 15);
+        scheduler.put("backoff-initial-minutes", 5);
+        scheduler.put("backoff-max-minutes", 240);
+        scheduler.put("maintenance-windows", new java.util.ArrayList<>());
+        defaultMap.put("scheduler", scheduler);
+
+        Map<String, Object> rateLimit = new LinkedHashMap<>();
+        rateLimit.put("shared", true);
+        rateLimit.put("shared-file", "");
+        rateLimit.put("max-wait-seconds", 120);
+        defaultMap.put("rate-limit", rateLimit);
+
+        Map<String, Object> coordination = new LinkedHashMap<>();
+        coordination.put("enabled", false);
+        coordination.put("shared-directory", "");
+        coordination.put("lease-seconds", 300);
+        defaultMap.put("coordination", coordination);
+
+        Map<String, Object> artifactStore = new LinkedHashMap<>();
+        artifactStore.put("enabled", false);
+        artifactStore.put("directory", "");
+        artifactStore.put("max-size-mb", 1024);
+        defaultMap.put("artifact-store", artifactStore);
+
+        Map<String, Object> mirror = new LinkedHashMap<>();
+        mirror.put("serve", false);
+        mirror.put("bind", "127.0.0.1");
+        mirror.put("port", 8787);
+        mirror.put("max-size-mb", 512);
+        mirror.put("url", "");
+        defaultMap.put("mirror", mirror);
+
+        Map<String, Object> resilience = new LinkedHashMap<>();
+        resilience.put("max-attempts", 3);
+        resilience.put("retry-delay-ms", 1000);
+        resilience.put("retry-max-delay-ms", 30000);
+        resilience.put("call-timeout-seconds", 60);
+        resilience.put("download-timeout-seconds", 600);
+        resilience.put("breaker-failure-threshold", 5);
+        resilience.put("breaker-open-seconds", 60);
+        defaultMap.put("resilience", resilience);
+
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        endpoints.put("modrinth", java.util.List.of("https://api.modrinth.com/v2"));
+        endpoints.put("geyser", java.util.List.of("https://download.geysermc.org/v2"));
+        endpoints.put("hedge", true);
+        endpoints.put("hedge-delay-ms", 2000);
+        defaultMap.put("endpoints", endpoints);
+
+        Map<String, Object> sources = new LinkedHashMap<>();
+        sources.put("routes", new LinkedHashMap<>());
+        sources.put("race", false);
+        defaultMap.put("sources", sources);
         
         saveYaml(configPath, defaultMap);
     }
@@ -105,80 +236,251 @@ public class ConfigManager {
     }
 
     public boolean isDebug() {
-        return (boolean) config.getOrDefault("debug", false);
+        return snapshot.debug();
+    }
+
+    public boolean isHotReloadEnabled() {
+        return snapshot.hotReload();
     }
 
     public boolean isShutdownScriptEnabled() {
-        return (boolean) config.getOrDefault("enable-shutdown-script", false);
+        return snapshot.shutdownScript();
     }
 
     public String getUpdateStrategy() {
-        return (String) config.getOrDefault("update-strategy", "AUTO");
+        return snapshot.updateStrategy();
+    }
+
+    /**
+     * HASH compares the installed jar's checksum with the remote file, VERSION compares
+     * version strings through the platform.
+     */
+    public String getResolutionMode() {
+        return snapshot.resolutionMode();
+    }
+
+    public boolean isHashResolution() {
+        return "HASH".equalsIgnoreCase(getResolutionMode());
     }
 
     public boolean isAllowAlpha() {
-        return (boolean) config.getOrDefault("allow-alpha", true);
+        return snapshot.allowAlpha();
     }
 
     public boolean isAllowBeta() {
-        return (boolean) config.getOrDefault("allow-beta", true);
+        return snapshot.allowBeta();
     }
 
     public boolean isAutoInstallEnabled(String project) {
-        Object obj = config.get("auto-install");
-        if (obj instanceof Map) {
-            Map<?, ?> map = (Map<?, ?>) obj;
-            return Boolean.TRUE.equals(map.get(project));
-        }
-        return false;
+        return snapshot.autoInstall().contains(project);
     }
 
-    @SuppressWarnings("unchecked")
     public boolean isAutoRestartEnabled() {
-        Object obj = config.get("auto-restart");
-        if (obj instanceof Map) {
-            return Boolean.TRUE.equals(((Map<String, Object>) obj).get("enabled"));
-        }
-        return false;
+        return snapshot.autoRestart().enabled();
     }
 
-    @SuppressWarnings("unchecked")
     public boolean isRestartTrigger(String projectId) {
-        Object obj = config.get("auto-restart");
-        if (obj instanceof Map) {
-            Map<String, Object> map = (Map<String, Object>) obj;
-            Object triggers = map.get("triggers");
-            if (triggers instanceof java.util.List) {
-                return ((java.util.List<String>) triggers).contains(projectId);
-            }
-        }
-        return false;
+        return snapshot.autoRestart().triggers().contains(projectId);
     }
 
-    @SuppressWarnings("unchecked")
     public String getRestartScript() {
-        Object obj = config.get("auto-restart");
-        if (obj instanceof Map) {
-            return (String) ((Map<String, Object>) obj).get("restart-script");
-        }
-        return "";
+        return snapshot.autoRestart().script();
     }
 
-    @SuppressWarnings("unchecked")
     public int getRestartDelay() {
-        Object obj = config.get("auto-restart");
-        if (obj instanceof Map) {
-            Object delay = ((Map<String, Object>) obj).get("delay");
-            if (delay instanceof Number) {
-                return ((Number) delay).intValue();
-            }
-        }
-        return 10;
+        return snapshot.autoRestart().delay();
+    }
+
+    public int getConnectTimeout() {
+        return snapshot.network().connectTimeout();
+    }
+
+    public int getRequestTimeout() {
+        return snapshot.network().requestTimeout();
+    }
+
+    public int getDownloadSegments() {
+        return snapshot.network().downloadSegments();
+    }
+
+    public int getMetadataTtlMinutes() {
+        return snapshot.metadataCache().ttlMinutes();
+    }
+
+    public int getMetadataMaxAgeHours() {
+        return snapshot.metadataCache().maxAgeHours();
+    }
+
+    public boolean isSchedulerEnabled() {
+        return snapshot.scheduler().enabled();
+    }
+
+    public int getCheckIntervalMinutes() {
+        return snapshot.scheduler().intervalMinutes();
+    }
+
+    public int getCheckJitterMinutes() {
+        return snapshot.scheduler().jitterMinutes();
+    }
+
+    public int getBackoffInitialMinutes() {
+        return snapshot.scheduler().backoffInitialMinutes();
+    }
+
+    public int getBackoffMaxMinutes() {
+        return snapshot.scheduler().backoffMaxMinutes();
+    }
+
+    /**
+     * @return the valid maintenance windows; empty if downloads are not restricted
+     */
+    public java.util.List<MaintenanceWindow> getMaintenanceWindows() {
+        return snapshot.scheduler().maintenanceWindows();
+    }
+
+    public boolean isRateLimitShared() {
+        return snapshot.rateLimit().shared();
+    }
+
+    /**
+     * Returns the file holding the rate limit state shared by every process on this host.
+     * Defaults to a file in the system temp folder; relative paths are resolved against the data folder.
+     */
+    public Path getRateLimitSharedFile(String api) {
+        Path file = snapshot.rateLimit().sharedFile();
+        if (file != null) return file;
+        return Path.of(System.getProperty("java.io.tmpdir"), "geyserupdater",
+                api.toLowerCase(java.util.Locale.ROOT) + "-ratelimit.json");
+    }
+
+    public int getRateLimitMaxWaitSeconds() {
+        return snapshot.rateLimit().maxWaitSeconds();
+    }
+
+    public boolean isCoordinationEnabled() {
+        return snapshot.coordination().enabled();
+    }
+
+    /**
+     * Returns the directory shared by every instance on this host. Defaults to a folder in the
+     * system temp folder; relative paths are resolved against the data folder.
+     */
+    public Path getCoordinationDirectory() {
+        Path dir = snapshot.coordination().directory();
+        return dir != null ? dir : Path.of(System.getProperty("java.io.tmpdir"), "geyserupdater", "shared");
+    }
+
+    public int getCoordinationLeaseSeconds() {
+        return snapshot.coordination().leaseSeconds();
+    }
+
+    public boolean isArtifactStoreEnabled() {
+        return snapshot.artifactStore().enabled();
+    }
+
+    /**
+     * Returns the root of the host-wide artifact store. Defaults to a folder in the system temp
+     * folder; relative paths are resolved against the data folder.
+     */
+    public Path getArtifactStoreDirectory() {
+        Path dir = snapshot.artifactStore().directory();
+        return dir != null ? dir : Path.of(System.getProperty("java.io.tmpdir"), "geyserupdater", "store");
+    }
+
+    public long getArtifactStoreMaxSizeMb() {
+        return snapshot.artifactStore().maxSizeMb();
+    }
+
+    public boolean isMirrorServerEnabled() {
+        return snapshot.mirror().serve();
+    }
+
+    public String getMirrorBind() {
+        return snapshot.mirror().bind();
+    }
+
+    public int getMirrorPort() {
+        return snapshot.mirror().port();
+    }
+
+    public long getMirrorMaxSizeMb() {
+        return snapshot.mirror().maxSizeMb();
+    }
+
+    /**
+     * Returns the base URL of the mirror to fetch updates from, without a trailing slash,
+     * or null to go to the official servers directly.
+     */
+    public String getMirrorUrl() {
+        return snapshot.mirror().url();
+    }
+
+    public int getRetryMaxAttempts() {
+        return snapshot.resilience().maxAttempts();
+    }
+
+    public long getRetryDelayMillis() {
+        return snapshot.resilience().retryDelayMillis();
+    }
+
+    public long getRetryMaxDelayMillis() {
+        return snapshot.resilience().retryMaxDelayMillis();
+    }
+
+    /**
+     * Returns the limit for one metadata request including its body, on top of the
+     * request timeout, which only covers waiting for the response headers.
+     */
+    public int getCallTimeoutSeconds() {
+        return snapshot.resilience().callTimeoutSeconds();
+    }
+
+    /**
+     * Returns the limit for one download request. A download cut off by it resumes on the next attempt.
+     */
+    public int getDownloadTimeoutSeconds() {
+        return snapshot.resilience().downloadTimeoutSeconds();
+    }
+
+    public int getBreakerFailureThreshold() {
+        return snapshot.resilience().breakerFailureThreshold();
+    }
+
+    public int getBreakerOpenSeconds() {
+        return snapshot.resilience().breakerOpenSeconds();
+    }
+
+    /**
+     * @param source {@code modrinth} or {@code geyser}
+     * @return the configured base URLs of that source, empty to use the official one
+     */
+    public java.util.List<String> getEndpoints(String source) {
+        return snapshot.endpoints().bySource().getOrDefault(source, java.util.List.of());
+    }
+
+    public boolean isHedgingEnabled() {
+        return snapshot.endpoints().hedge();
+    }
+
+    /**
+     * Returns how long to wait before hedging while an endpoint has too few samples for a p95.
+     */
+    public long getHedgeDelayMillis() {
+        return snapshot.endpoints().hedgeDelayMillis();
+    }
+
+    /**
+     * @return project ID to the sources to ask for it, in order; projects not listed use the platform default
+     */
+    public Map<String, java.util.List<String>> getSourceRoutes() {
+        return snapshot.sources().routes();
+    }
+
+    public boolean isSourceRaceEnabled() {
+        return snapshot.sources().race();
     }
 
     public String getMessage(String key) {
-        String prefix = (String) messages.getOrDefault("prefix", "");
-        String msg = (String) messages.getOrDefault(key, key);
-        return (prefix + msg).replace("&", "§"); 
+        return snapshot.messages().get(key);
     }
 }
@@ -0,0 +1,260 @@
+package cn.lemwood.geyserupdater.common.config;
+
+import cn.lemwood.geyserupdater.common.scheduler.MaintenanceWindow;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Everything read from {@code config.yml} and {@code messages.yml}, parsed once into typed,
+ * immutable values.
+ * <p>
+ * {@link ConfigManager} keeps the current snapshot behind a single volatile reference, so a
+ * getter is a field load rather than a map lookup and a cast, and a reload replaces the whole
+ * snapshot at once: readers see either the old settings or the new ones, never a mix.
+ * Missing or mistyped values fall back to the defaults; entries that can't be used at all are
+ * left out and listed in {@link #warnings()}.
+ */
+public record ConfigSnapshot(
+        boolean debug,
+        boolean hotReload,
+        boolean shutdownScript,
+        String updateStrategy,
+        String resolutionMode,
+        boolean allowAlpha,
+        boolean allowBeta,
+        Set<String> autoInstall,
+        AutoRestart autoRestart,
+        Network network,
+        MetadataCache metadataCache,
+        Scheduler scheduler,
+        RateLimit rateLimit,
+        Coordination coordination,
+        ArtifactStore artifactStore,
+        Mirror mirror,
+        Resilience resilience,
+        Endpoints endpoints,
+        Sources sources,
+        Messages messages,
+        List<String> warnings) {
+
+    public record AutoRestart(boolean enabled, Set<String> triggers, String script, int delay) {
+    }
+
+    public record Network(int connectTimeout, int requestTimeout, int downloadSegments) {
+    }
+
+    public record MetadataCache(int ttlMinutes, int maxAgeHours) {
+    }
+
+    /**
+     * @param maintenanceWindows the valid windows; empty if downloads are not restricted
+     */
+    public record Scheduler(boolean enabled, int intervalMinutes, int jitterMinutes, int backoffInitialMinutes,
+                            int backoffMaxMinutes, List<MaintenanceWindow> maintenanceWindows) {
+    }
+
+    /**
+     * @param sharedFile the configured state file, or null for the default in the temp folder
+     */
+    public record RateLimit(boolean shared, Path sharedFile, int maxWaitSeconds) {
+    }
+
+    public record Coordination(boolean enabled, Path directory, int leaseSeconds) {
+    }
+
+    public record ArtifactStore(boolean enabled, Path directory, long maxSizeMb) {
+    }
+
+    /**
+     * @param url the mirror to fetch updates from, without a trailing slash, or null
+     */
+    public record Mirror(boolean serve, String bind, int port, long maxSizeMb, String url) {
+    }
+
+    public record Resilience(int maxAttempts, long retryDelayMillis, long retryMaxDelayMillis, int callTimeoutSeconds,
+                             int downloadTimeoutSeconds, int breakerFailureThreshold, int breakerOpenSeconds) {
+    }
+
+    /**
+     * @param bySource source to its configured base URLs
+     */
+    public record Endpoints(Map<String, List<String>> bySource, boolean hedge, long hedgeDelayMillis) {
+    }
+
+    public record Sources(Map<String, List<String>> routes, boolean race) {
+    }
+
+    /**
+     * @param rendered message key to the text with the prefix and colour codes already applied
+     */
+    public record Messages(String prefix, Map<String, String> rendered) {
+        public String get(String key) {
+            String message = rendered.get(key);
+            return message != null ? message : (prefix + key).replace("&", "§");
+        }
+    }
+
+    /**
+     * Parses the loaded YAML documents. Relative paths are resolved against {@code dataFolder}.
+     */
+    public static ConfigSnapshot parse(Map<String, Object> config, Map<String, Object> messages, Path dataFolder) {
+        Section root = new Section(config);
+        List<String> warnings = new ArrayList<>();
+
+        Set<String> autoInstall = new HashSet<>();
+        section(config, "auto-install").map.forEach((project, enabled) -> {
+            if (Boolean.TRUE.equals(enabled)) autoInstall.add(project);
+        });
+
+        Section restart = section(config, "auto-restart");
+        AutoRestart autoRestart = new AutoRestart(restart.bool("enabled", false),
+                Set.copyOf(restart.strings("triggers")), restart.string("restart-script", ""),
+                restart.integer("delay", 10));
+
+        Section network = section(config, "network");
+        Section cache = section(config, "metadata-cache");
+        Section scheduler = section(config, "scheduler");
+        List<MaintenanceWindow> windows = new ArrayList<>();
+        if (scheduler.map.get("maintenance-windows") instanceof List<?> list) {
+            for (Object window : list) {
+                if (!(window instanceof Map<?, ?> entry)
+                        || !(entry.get("cron") instanceof String cron)
+                        || !(entry.get("duration-minutes") instanceof Number minutes)) {
+                    warnings.add("Ignoring maintenance window without cron and duration-minutes: " + window);
+                    continue;
+                }
+                try {
+                    windows.add(new MaintenanceWindow(cron, Duration.ofMinutes(minutes.longValue())));
+                } catch (IllegalArgumentException e) {
+                    warnings.add("Ignoring invalid maintenance window: " + e.getMessage());
+                }
+            }
+        }
+
+        Section rateLimit = section(config, "rate-limit");
+        Section coordination = section(config, "coordination");
+        Section store = section(config, "artifact-store");
+        Section mirror = section(config, "mirror");
+        String bind = mirror.string("bind", "");
+        String mirrorUrl = mirror.string("url", "").trim();
+        if (mirrorUrl.endsWith("/")) mirrorUrl = mirrorUrl.substring(0, mirrorUrl.length() - 1);
+        Section resilience = section(config, "resilience");
+
+        Section endpoints = section(config, "endpoints");
+        Map<String, List<String>> bySource = new HashMap<>();
+        endpoints.map.forEach((source, value) -> {
+            if (value instanceof List) bySource.put(source, endpoints.strings(source));
+        });
+
+        Section sources = section(config, "sources");
+        Map<String, List<String>> routes = new LinkedHashMap<>();
+        if (sources.map.get("routes") instanceof Map<?, ?> map) {
+            map.forEach((project, route) -> {
+                List<String> list = new ArrayList<>();
+                if (route instanceof List<?> entries) {
+                    for (Object source : entries) {
+                        if (source != null) list.add(source.toString().trim().toLowerCase());
+                    }
+                } else if (route != null) {
+                    list.add(route.toString().trim().toLowerCase());
+                }
+                routes.put(String.valueOf(project), List.copyOf(list));
+            });
+        }
+
+        String prefix = messages.get("prefix") instanceof String p ? p : "";
+        Map<String, String> rendered = new HashMap<>();
+        copy(messages).forEach((key, value) -> {
+            if (value instanceof String message) rendered.put(key, (prefix + message).replace("&", "§"));
+        });
+
+        return new ConfigSnapshot(
+                root.bool("debug", false),
+                root.bool("hot-reload", true),
+                root.bool("enable-shutdown-script", false),
+                root.string("update-strategy", "AUTO"),
+                root.string("resolution-mode", "HASH"),
+                root.bool("allow-alpha", true),
+                root.bool("allow-beta", true),
+                Set.copyOf(autoInstall),
+                autoRestart,
+                new Network(network.integer("connect-timeout", 10), network.integer("request-timeout", 30),
+                        Math.max(1, network.integer("download-segments", 4))),
+                new MetadataCache(cache.integer("ttl-minutes", 30), cache.integer("max-age-hours", 72)),
+                new Scheduler(scheduler.bool("enabled", true), scheduler.integer("interval-minutes", 360),
+                        scheduler.integer("jitter-minutes", 15), scheduler.integer("backoff-initial-minutes", 5),
+                        scheduler.integer("backoff-max-minutes", 240), List.copyOf(windows)),
+                new RateLimit(rateLimit.bool("shared", true), rateLimit.path("shared-file", dataFolder),
+                        rateLimit.integer("max-wait-seconds", 120)),
+                new Coordination(coordination.bool("enabled", false), coordination.path("shared-directory", dataFolder),
+                        coordination.integer("lease-seconds", 300)),
+                new ArtifactStore(store.bool("enabled", false), store.path("directory", dataFolder),
+                        store.number("max-size-mb", 1024)),
+                new Mirror(mirror.bool("serve", false), bind.isBlank() ? "127.0.0.1" : bind, mirror.integer("port", 8787),
+                        mirror.number("max-size-mb", 512), mirrorUrl.isEmpty() ? null : mirrorUrl),
+                new Resilience(resilience.integer("max-attempts", 3), resilience.number("retry-delay-ms", 1000),
+                        resilience.number("retry-max-delay-ms", 30000), resilience.integer("call-timeout-seconds", 60),
+                        resilience.integer("download-timeout-seconds", 600),
+                        resilience.integer("breaker-failure-threshold", 5), resilience.integer("breaker-open-seconds", 60)),
+                new Endpoints(Map.copyOf(bySource), endpoints.bool("hedge", true), endpoints.number("hedge-delay-ms", 2000)),
+                new Sources(java.util.Collections.unmodifiableMap(routes), sources.bool("race", false)),
+                new Messages(prefix, Map.copyOf(rendered)),
+                List.copyOf(warnings));
+    }
+
+    private static Section section(Map<String, Object> config, String name) {
+        return config.get(name) instanceof Map<?, ?> map ? new Section(copy(map)) : new Section(Map.of());
+    }
+
+    private static Map<String, Object> copy(Map<?, ?> map) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        map.forEach((key, value) -> result.put(String.valueOf(key), value));
+        return java.util.Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Typed lookups in one level of the YAML tree.
+     */
+    private record Section(Map<String, Object> map) {
+        boolean bool(String key, boolean def) {
+            return map.get(key) instanceof Boolean value ? value : def;
+        }
+
+        int integer(String key, int def) {
+            return map.get(key) instanceof Number value ? value.intValue() : def;
+        }
+
+        long number(String key, long def) {
+            return map.get(key) instanceof Number value ? value.longValue() : def;
+        }
+
+        String string(String key, String def) {
+            return map.get(key) instanceof String value ? value : def;
+        }
+
+        /**
+         * @return the configured path resolved against {@code dataFolder}, or null if unset
+         */
+        Path path(String key, Path dataFolder) {
+            return map.get(key) instanceof String value && !value.isBlank() ? dataFolder.resolve(value) : null;
+        }
+
+        List<String> strings(String key) {
+            List<String> result = new ArrayList<>();
+            if (map.get(key) instanceof List<?> list) {
+                for (Object value : list) {
+                    if (value instanceof String s && !s.isBlank()) result.add(s.trim());
+                }
+            }
+            return List.copyOf(result);
+        }
+    }
+}
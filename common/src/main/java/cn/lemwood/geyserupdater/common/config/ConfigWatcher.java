@@ -0,0 +1,115 @@
+package cn.lemwood.geyserupdater.common.config;
+
+import cn.lemwood.geyserupdater.common.platform.PlatformAdapter;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reloads {@code config.yml} and {@code messages.yml} when they change on disk.
+ * <p>
+ * Both files are parsed on the watcher's own daemon thread, never on a server thread, and the
+ * result is swapped in through {@link ConfigManager#reload}, which also tells the listeners.
+ * Editors often save in several writes, so a reload waits until the folder has been quiet for
+ * a moment. A file that doesn't parse is reported and the current settings are kept.
+ */
+public class ConfigWatcher implements AutoCloseable {
+    private static final long SETTLE_MILLIS = 500;
+
+    private final PlatformAdapter platform;
+    private final ConfigManager config;
+    private WatchService watcher;
+    private Thread watchThread;
+
+    public ConfigWatcher(PlatformAdapter platform, ConfigManager config) {
+        this.platform = platform;
+        this.config = config;
+    }
+
+    public synchronized void start() {
+        if (watcher != null) return;
+        Path dir = config.getConfigPath().getParent();
+        WatchService service = null;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+            dir.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | UnsupportedOperationException e) {
+            closeQuietly(service);
+            if (config.isDebug()) {
+                platform.info("Cannot watch " + dir + ", config changes need a restart: " + e.getMessage());
+            }
+            return;
+        }
+        WatchService started = service;
+        watcher = started;
+        watchThread = new Thread(() -> processEvents(started), "GeyserUpdater-ConfigWatcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    private void processEvents(WatchService service) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = isConfigEvent(key);
+                if (!key.reset()) return;
+                if (!changed) continue;
+                WatchKey more;
+                while ((more = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    isConfigEvent(more);
+                    if (!more.reset()) return;
+                }
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+        }
+    }
+
+    private boolean isConfigEvent(WatchKey key) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                relevant = true;
+            } else if (event.context() instanceof Path name) {
+                relevant |= name.equals(config.getConfigPath().getFileName())
+                        || name.equals(config.getMessagesPath().getFileName());
+            }
+        }
+        return relevant;
+    }
+
+    private void reload() {
+        try {
+            if (config.reload()) {
+                platform.info(config.getMessage("config-reloaded"));
+            } else if (config.isDebug()) {
+                platform.info("Config files were touched but nothing changed");
+            }
+        } catch (Exception e) {
+            platform.warn(config.getMessage("config-reload-failed").replace("{error}", String.valueOf(e.getMessage())));
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (watcher == null) return;
+        closeQuietly(watcher);
+        watchThread.interrupt();
+        watcher = null;
+    }
+
+    private static void closeQuietly(WatchService service) {
+        if (service == null) return;
+        try {
+            service.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package cn.lemwood.geyserupdater.common.coordination;
+
+import cn.lemwood.geyserupdater.common.api.UpdateClient;
+import cn.lemwood.geyserupdater.common.config.ConfigManager;
+import cn.lemwood.geyserupdater.common.config.ConfigSnapshot;
+import cn.lemwood.geyserupdater.common.hash.HashAlgorithm;
+import cn.lemwood.geyserupdater.common.hash.Hex;
+import cn.lemwood.geyserupdater.common.platform.PlatformAdapter;
+import cn.lemwood.geyserupdater.common.util.AtomicFiles;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Shares version lookups between all instances on the host.
+ * <p>
+ * Results are published to a metadata file in the shared directory. A lookup first uses
+ * entries there that are still within the metadata TTL; only the remaining projects are
+ * fetched, by whichever instance holds the lock, so a mass restart costs one round of API
+ * calls per host instead of one per server.
+ */
+public class CoordinatedUpdateClient implements UpdateClient {
+    private static final int FORMAT_VERSION = 1;
+
+    private final PlatformAdapter platform;
+    private final ConfigManager config;
+    private final HostCoordinator coordinator;
+    private final UpdateClient delegate;
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    public CoordinatedUpdateClient(PlatformAdapter platform, ConfigManager config, HostCoordinator coordinator,
+                                   UpdateClient delegate) {
+        this.platform = platform;
+        this.config = config;
+        this.coordinator = coordinator;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public CompletableFuture<UpdateVersion> getLatestVersion(String projectId) {
+        if (!coordinator.isEnabled()) return delegate.getLatestVersion(projectId);
+        return getLatestVersions(List.of(projectId)).thenApply(versions -> versions.get(projectId));
+    }
+
+    @Override
+    public Collection<URI> getEndpoints() {
+        return delegate.getEndpoints();
+    }
+
+    @Override
+    public CompletableFuture<Map<String, UpdateVersion>> getLatestVersions(Collection<String> projectIds) {
+        if (!coordinator.isEnabled()) return delegate.getLatestVersions(projectIds);
+
+        Map<String, UpdateVersion> result = new HashMap<>();
+        if (collectFresh(projectIds, result)) return CompletableFuture.completedFuture(result);
+
+        // Results differ per loader, so each platform type gets its own lock and file
+        String loader = platform.getModrinthLoader();
+        return coordinator.runExclusive("metadata-" + loader, locked -> {
+            // The previous leader may have published what we need while we waited
+            List<String> missing = new ArrayList<>();
+            for (String projectId : projectIds) {
+                if (!result.containsKey(projectId)) missing.add(projectId);
+            }
+            if (collectFresh(missing, result)) return CompletableFuture.completedFuture(result);
+
+            List<String> toFetch = new ArrayList<>();
+            for (String projectId : missing) {
+                if (!result.containsKey(projectId)) toFetch.add(projectId);
+            }
+            return delegate.getLatestVersions(toFetch).thenApply(fetched -> {
+                publish(fetched);
+                result.putAll(fetched);
+                return result;
+            });
+        });
+    }
+
+    /**
+     * Adds every shared entry that is still fresh to {@code result}.
+     * @return true if all projects were found
+     */
+    private boolean collectFresh(Collection<String> projectIds, Map<String, UpdateVersion> result) {
+        Map<String, Entry> entries = load();
+        long ttl = config.getMetadataTtlMinutes() * 60_000L;
+        long now = System.currentTimeMillis();
+        boolean complete = true;
+        for (String projectId : projectIds) {
+            Entry entry = entries.get(cacheKey(projectId));
+            if (entry != null && entry.version != null && now - entry.fetchedAt < ttl) {
+                result.put(projectId, entry.version);
+            } else {
+                complete = false;
+            }
+        }
+        return complete;
+    }
+
+    /**
+     * Writes fetched versions to the shared file. This normally happens under the lock; when a
+     * lease ran out, two writers can at worst drop each other's entries, which are refetched later.
+     */
+    private void publish(Map<String, UpdateVersion> fetched) {
+        Map<String, Entry> entries = load();
+        long now = System.currentTimeMillis();
+        fetched.forEach((projectId, version) -> {
+            if (version == null) return;
+            Entry entry = new Entry();
+            entry.version = version;
+            entry.fetchedAt = now;
+            entries.put(cacheKey(projectId), entry);
+        });
+        StoreFile data = new StoreFile();
+        data.version = FORMAT_VERSION;
+        data.entries = entries;
+        try {
+            AtomicFiles.writeString(storeFile(), gson.toJson(data));
+        } catch (IOException e) {
+            platform.warn("Failed to share versions with other instances: " + e.getMessage());
+        }
+    }
+
+    private Map<String, Entry> load() {
+        try {
+            StoreFile data = gson.fromJson(Files.readString(storeFile(), StandardCharsets.UTF_8), StoreFile.class);
+            if (data != null && data.version == FORMAT_VERSION && data.entries != null) {
+                return data.entries;
+            }
+        } catch (NoSuchFileException ignored) {
+        } catch (IOException | JsonParseException e) {
+            if (config.isDebug()) {
+                platform.warn("Shared version file is unreadable, ignoring it: " + e.getMessage());
+            }
+        }
+        return new HashMap<>();
+    }
+
+    private Path storeFile() {
+        return coordinator.getSharedDirectory()
+                .resolve("metadata-" + HostCoordinator.sanitize(platform.getModrinthLoader()) + ".json");
+    }
+
+    /**
+     * The result also depends on the version filters, the resolution mode and where the
+     * project is looked up, so instances configured differently don't hand each other the
+     * wrong answer. The routing settings go in as a digest to keep the key short.
+     */
+    private String cacheKey(String projectId) {
+        ConfigSnapshot snapshot = config.snapshot();
+        String routing = snapshot.sources().routes().get(projectId) + ";race=" + snapshot.sources().race()
+                + ";endpoints=" + new TreeMap<>(snapshot.endpoints().bySource()) + ";mirror=" + snapshot.mirror().url();
+        String digest = Hex.encode(HashAlgorithm.SHA256.newDigest().digest(routing.getBytes(StandardCharsets.UTF_8)));
+        return projectId + "#alpha=" + snapshot.allowAlpha() + ",beta=" + snapshot.allowBeta()
+                + ",mode=" + snapshot.resolutionMode().toUpperCase() + ",routing=" + digest.substring(0, 16);
+    }
+
+    private static class StoreFile {
+        int version;
+        Map<String, Entry> entries;
+    }
+
+    private static class Entry {
+        UpdateVersion version;
+        long fetchedAt;
+    }
+}
@@ -0,0 +1,146 @@
+package cn.lemwood.geyserupdater.common.coordination;
+
+import cn.lemwood.geyserupdater.common.config.ConfigManager;
+import cn.lemwood.geyserupdater.common.platform.PlatformAdapter;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Coordinates work between all server instances on one host through lock files in a
+ * shared directory.
+ * <p>
+ * For a given key, the instance that gets the lock first becomes the leader and does the
+ * work, publishing its result in the shared directory. The others wait for the lock and then
+ * find that result already there. The operating system drops the lock when the leader process
+ * dies, so a crashed leader never blocks anyone. A leader that hangs is bounded by the lease:
+ * once it runs out, followers stop waiting and do the work themselves.
+ */
+public class HostCoordinator {
+    private static final long POLL_MILLIS = 500;
+
+    private final PlatformAdapter platform;
+    private final ConfigManager config;
+
+    public HostCoordinator(PlatformAdapter platform, ConfigManager config) {
+        this.platform = platform;
+        this.config = config;
+    }
+
+    public boolean isEnabled() {
+        return config.isCoordinationEnabled();
+    }
+
+    public Path getSharedDirectory() {
+        return config.getCoordinationDirectory();
+    }
+
+    /**
+     * Runs {@code work} while holding the host-wide lock for {@code key}. The work should first
+     * look for a result published by an earlier leader before doing anything itself.
+     * <p>
+     * The work receives false if it runs without the lock because the lease ran out or the
+     * shared directory is unusable; it must then avoid writing anything another instance may
+     * be writing at the same time.
+     */
+    public <T> CompletableFuture<T> runExclusive(String key, Function<Boolean, CompletableFuture<T>> work) {
+        Path lockFile = lockFile(key);
+        long deadline = System.currentTimeMillis() + config.getCoordinationLeaseSeconds() * 1000L;
+        return acquire(key, lockFile, deadline, false).thenCompose(lock -> {
+            CompletableFuture<T> result;
+            try {
+                result = work.apply(lock != null);
+            } catch (RuntimeException e) {
+                result = CompletableFuture.failedFuture(e);
+            }
+            return result.whenComplete((value, error) -> release(lock));
+        });
+    }
+
+    /**
+     * Runs {@code work} while holding the host-wide lock for {@code key}, but only if nobody
+     * holds it right now; never waits.
+     * @return true if the work ran
+     */
+    public boolean tryExclusive(String key, Runnable work) {
+        FileLock lock;
+        try {
+            lock = tryLock(lockFile(key));
+        } catch (IOException e) {
+            return false;
+        }
+        if (lock == null) return false;
+        try {
+            work.run();
+            return true;
+        } finally {
+            release(lock);
+        }
+    }
+
+    private Path lockFile(String key) {
+        return getSharedDirectory().resolve("locks").resolve(sanitize(key) + ".lock");
+    }
+
+    /**
+     * Completes with the lock, or with null once the lease has run out or the shared
+     * directory cannot be used, in which case the caller proceeds on its own.
+     */
+    private CompletableFuture<FileLock> acquire(String key, Path lockFile, long deadline, boolean waiting) {
+        FileLock lock;
+        try {
+            lock = tryLock(lockFile);
+        } catch (IOException e) {
+            platform.warn("Cannot use shared directory for coordination, continuing alone: " + e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+        if (lock != null) return CompletableFuture.completedFuture(lock);
+
+        if (System.currentTimeMillis() >= deadline) {
+            platform.warn("Lease for " + key + " expired while another instance held it, continuing alone");
+            return CompletableFuture.completedFuture(null);
+        }
+        if (!waiting && config.isDebug()) {
+            platform.info("Another instance is working on " + key + ", waiting for its result");
+        }
+        return CompletableFuture.supplyAsync(() -> null, CompletableFuture.delayedExecutor(POLL_MILLIS, TimeUnit.MILLISECONDS))
+                .thenCompose(v -> acquire(key, lockFile, deadline, true));
+    }
+
+    private static FileLock tryLock(Path lockFile) throws IOException {
+        Files.createDirectories(lockFile.getParent());
+        FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Held by another check in this same process
+            lock = null;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (lock == null) channel.close();
+        return lock;
+    }
+
+    private static void release(FileLock lock) {
+        if (lock == null) return;
+        try {
+            lock.channel().close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    static String sanitize(String key) {
+        return key.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+}
@@ -0,0 +1,155 @@
+package cn.lemwood.geyserupdater.common.coordination;
+
+import cn.lemwood.geyserupdater.common.api.UpdateClient;
+import cn.lemwood.geyserupdater.common.download.ArtifactDownloader;
+import cn.lemwood.geyserupdater.common.download.StagedArtifact;
+import cn.lemwood.geyserupdater.common.hash.HashAlgorithm;
+import cn.lemwood.geyserupdater.common.store.ArtifactStore;
+import cn.lemwood.geyserupdater.common.util.AtomicFiles;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Downloads each artifact once per host.
+ * <p>
+ * The leader for an artifact downloads and verifies it into the shared directory, under a
+ * folder named after its checksum. Every instance, the leader included, then copies the
+ * verified file into its own staging location, so installing works exactly as for a direct download.
+ * Each use marks the folder as used; folders no instance has used for a day are removed, so
+ * superseded builds don't pile up. A folder is only removed while holding its artifact's
+ * lock, so never while another instance is copying from it.
+ * <p>
+ * When the artifact store is enabled it takes the place of the shared folder: the leader adds
+ * its download to the store and the others link it from there.
+ */
+public class SharedArtifacts {
+    private static final Duration UNUSED_RETENTION = Duration.ofDays(1);
+
+    private final HostCoordinator coordinator;
+    private final ArtifactDownloader downloader;
+    private final ArtifactStore store;
+
+    public SharedArtifacts(HostCoordinator coordinator, ArtifactDownloader downloader, ArtifactStore store) {
+        this.coordinator = coordinator;
+        this.downloader = downloader;
+        this.store = store;
+    }
+
+    public CompletableFuture<StagedArtifact> fetch(UpdateClient.UpdateVersion version, Path targetDir) {
+        HashAlgorithm algorithm = version.getPreferredHashAlgorithm();
+        if (algorithm == null) {
+            // Without a checksum there is no safe way to tell two artifacts apart
+            return store.fetch(version, targetDir, () -> downloader.download(version, targetDir));
+        }
+        String hash = version.getHash(algorithm).toLowerCase();
+        String key = algorithm.getKey() + "-" + hash;
+        Path sharedDir = coordinator.getSharedDirectory().resolve("artifacts").resolve(key);
+        Path shared = sharedDir.resolve(version.filename);
+
+        return coordinator.runExclusive(lockKey(key), locked -> {
+            if (store.isEnabled()) {
+                // The store has its own lock, so this is safe with or without ours
+                return store.fetch(version, targetDir, () -> downloader.download(version, targetDir));
+            }
+            // Files only appear here by rename after verification, so existence means verified
+            if (Files.isRegularFile(shared)) {
+                // Marked first, so a pruner that gets the lock from a lease-expired follower still spares it
+                markUsed(sharedDir);
+                StagedArtifact staged = copyToStaging(shared, version, algorithm, hash, targetDir);
+                prune(sharedDir);
+                return CompletableFuture.completedFuture(staged);
+            }
+            if (!locked) {
+                // A stuck leader may still be writing into the shared folder, stay out of its way
+                return downloader.download(version, targetDir);
+            }
+            return downloader.download(version, sharedDir).thenApply(staged -> {
+                try {
+                    AtomicFiles.move(staged.file(), shared);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+                markUsed(sharedDir);
+                StagedArtifact copied = copyToStaging(shared, version, algorithm, hash, targetDir);
+                prune(sharedDir);
+                return copied;
+            });
+        });
+    }
+
+    private static String lockKey(String artifact) {
+        return "artifact-" + artifact;
+    }
+
+    private static void markUsed(Path sharedDir) {
+        try {
+            Files.setLastModifiedTime(sharedDir, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Removes the artifact folders next to {@code sharedDir} that haven't been used for
+     * {@link #UNUSED_RETENTION}. A folder whose lock is taken is in use and skipped. Best
+     * effort; whatever is left is tried again after the next fetch.
+     */
+    private void prune(Path sharedDir) {
+        long cutoff = System.currentTimeMillis() - UNUSED_RETENTION.toMillis();
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(sharedDir.getParent(), Files::isDirectory)) {
+            for (Path dir : dirs) {
+                if (dir.equals(sharedDir) || !isUnusedSince(dir, cutoff)) continue;
+                coordinator.tryExclusive(lockKey(dir.getFileName().toString()), () -> {
+                    // Checked again under the lock, an instance may have just used it
+                    if (isUnusedSince(dir, cutoff)) deleteRecursively(dir);
+                });
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static boolean isUnusedSince(Path dir, long cutoff) {
+        try {
+            return Files.getLastModifiedTime(dir).toMillis() < cutoff;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void deleteRecursively(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException ignored) {
+                    // e.g. still open by an instance copying it on Windows
+                }
+            });
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Copies a verified shared artifact into this instance's staging location.
+     */
+    private static StagedArtifact copyToStaging(Path file, UpdateClient.UpdateVersion version,
+                                                HashAlgorithm algorithm, String hash, Path targetDir) {
+        Path staging = targetDir.resolve(version.filename + ArtifactDownloader.STAGING_SUFFIX);
+        try {
+            Files.createDirectories(targetDir);
+            Files.copy(file, staging, StandardCopyOption.REPLACE_EXISTING);
+            return new StagedArtifact(staging, Files.size(staging), algorithm, hash);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+}
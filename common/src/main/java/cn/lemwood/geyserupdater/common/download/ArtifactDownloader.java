@@ -0,0 +1,336 @@
+package cn.lemwood.geyserupdater.common.download;
+
+import cn.lemwood.geyserupdater.common.api.UpdateClient;
+import cn.lemwood.geyserupdater.common.config.ConfigManager;
+import cn.lemwood.geyserupdater.common.hash.FileHasher;
+import cn.lemwood.geyserupdater.common.hash.HashAlgorithm;
+import cn.lemwood.geyserupdater.common.hash.Hex;
+import cn.lemwood.geyserupdater.common.http.EndpointSelector;
+import cn.lemwood.geyserupdater.common.http.HttpTransport;
+import cn.lemwood.geyserupdater.common.http.RequestGuard;
+import cn.lemwood.geyserupdater.common.mirror.MirrorServer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Downloads artifacts into a staging file inside the destination folder.
+ * <p>
+ * The body is hashed while it is written, and the staging file is only handed back once
+ * the digest matches the strongest checksum the source advertised. Because staging happens on the same
+ * filesystem as the target, installing it is a plain rename rather than a copy.
+ * <p>
+ * An interrupted download keeps its staging file together with a {@link PartialDownload}
+ * sidecar. The next attempt for the same URL and checksum continues with
+ * {@code Range} / {@code If-Range} instead of starting over from byte zero.
+ * <p>
+ * Fresh downloads of large artifacts are split into several ranges fetched at once when
+ * the server supports it (see {@link SegmentedDownload}); otherwise a single stream is used.
+ */
+public class ArtifactDownloader {
+    public static final String STAGING_SUFFIX = ".part";
+    private static final int PREFIX_BUFFER_SIZE = 1 << 16;
+    private static final long MIN_SEGMENT_SIZE = 4L << 20;
+
+    private final HttpTransport transport;
+    private final RequestGuard guard;
+    private final List<EndpointSelector> endpoints;
+    private final FileHasher hasher;
+    private final ConfigManager config;
+
+    /**
+     * @param endpoints sources whose mirrors may serve downloads as well, e.g. the Geyser download API
+     */
+    public ArtifactDownloader(HttpTransport transport, RequestGuard guard, List<EndpointSelector> endpoints,
+                              FileHasher hasher, ConfigManager config) {
+        this.transport = transport;
+        this.guard = guard;
+        this.endpoints = endpoints;
+        this.hasher = hasher;
+        this.config = config;
+    }
+
+    /**
+     * Downloads the given version next to its final location.
+     * @param version The version to download
+     * @param targetDir The folder the artifact will be installed into
+     * @return the verified staging file, to be moved into place by the caller
+     */
+    public CompletableFuture<StagedArtifact> download(UpdateClient.UpdateVersion version, Path targetDir) {
+        // A failed attempt leaves its partial file behind, so each retry resumes where the last one stopped
+        return guard.call(sourceOf(version).getHost(), () -> downloadOnce(version, targetDir),
+                ArtifactDownloader::isRetryable);
+    }
+
+    private static boolean isRetryable(Throwable error) {
+        if (error instanceof DownloadException de) return RequestGuard.isRetryableStatus(de.getStatusCode());
+        return RequestGuard.isTransient(error);
+    }
+
+    private CompletableFuture<StagedArtifact> downloadOnce(UpdateClient.UpdateVersion version, Path targetDir) {
+        Path staging = targetDir.resolve(version.filename + STAGING_SUFFIX);
+        HashAlgorithm preferred = version.getPreferredHashAlgorithm();
+        HashAlgorithm algorithm = preferred != null ? preferred : HashAlgorithm.SHA256;
+        String expected = version.getHash(algorithm);
+        // Keyed by the official URL, so a resume may continue from another mirror; If-Range guards the switch
+        PartialDownload partial = new PartialDownload(version.downloadUrl, algorithm.getKey(), expected);
+        long offset;
+        MessageDigest digest;
+        try {
+            Files.createDirectories(targetDir);
+            offset = resumableLength(staging, partial);
+            // Re-hash the bytes already on disk so the final digest still covers the whole file.
+            digest = offset > 0 ? digestPrefix(staging, algorithm, offset) : algorithm.newDigest();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        if (offset > 0 && offset == partial.expectedSize) {
+            // The previous run received every byte but did not get to verify them.
+            String hash = Hex.encode(digest.digest());
+            if (expected != null && expected.equalsIgnoreCase(hash)) {
+                PartialDownload.deleteSidecar(staging);
+                return CompletableFuture.completedFuture(new StagedArtifact(staging, offset, algorithm, hash));
+            }
+            PartialDownload.delete(staging);
+            offset = 0;
+            digest = algorithm.newDigest();
+        }
+        int segments = config.getDownloadSegments();
+        if (offset == 0 && segments > 1 && (version.size < 0 || version.size >= 2 * MIN_SEGMENT_SIZE)) {
+            return downloadSegmented(version, staging, algorithm, partial, segments);
+        }
+        return fetch(version, staging, algorithm, partial, offset, digest);
+    }
+
+    /**
+     * Probes the artifact with a HEAD request and fetches it in ranges if the server accepts
+     * them and the file is large enough to be worth splitting. The digest cannot be computed
+     * while ranges arrive out of order, so the assembled file is hashed once at the end.
+     */
+    private CompletableFuture<StagedArtifact> downloadSegmented(UpdateClient.UpdateVersion version, Path staging,
+                                                                HashAlgorithm algorithm, PartialDownload partial,
+                                                                int maxSegments) {
+        HttpRequest head = transport.newRequest(sourceOf(version))
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+        return RequestGuard.withTimeout(transport.sendAsync(head, HttpResponse.BodyHandlers.discarding()),
+                        Duration.ofSeconds(config.getCallTimeoutSeconds()))
+                .handle((response, error) -> response)
+                .thenCompose(response -> {
+                    int segments = response == null ? 1 : segmentCount(response, maxSegments);
+                    if (segments < 2) {
+                        return fetch(version, staging, algorithm, partial, 0, algorithm.newDigest());
+                    }
+                    partial.validator = PartialDownload.validatorOf(response.headers());
+                    partial.expectedSize = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+                    // Ranges go to the final URL so redirects are only followed once.
+                    return new SegmentedDownload(transport, response.uri(), staging, partial, segments,
+                            Duration.ofSeconds(config.getDownloadTimeoutSeconds())).run()
+                            .thenCompose(ignored -> hasher.hashAsync(staging, algorithm))
+                            .thenApply(hash -> verify(new StagedArtifact(staging, partial.expectedSize, algorithm, hash),
+                                    staging, partial));
+                });
+    }
+
+    /**
+     * The URL to download from: the fastest mirror of an API that serves the file, otherwise
+     * the configured LAN mirror for hosts it serves.
+     */
+    private URI sourceOf(UpdateClient.UpdateVersion version) {
+        for (EndpointSelector selector : endpoints) {
+            String rebased = selector.rebase(version.downloadUrl);
+            if (!rebased.equals(version.downloadUrl)) return URI.create(rebased);
+        }
+        return URI.create(MirrorServer.mirrored(config.getMirrorUrl(), version.downloadUrl));
+    }
+
+    private static int segmentCount(HttpResponse<?> head, int maxSegments) {
+        if (head.statusCode() != 200) return 1;
+        if (!head.headers().firstValue("Accept-Ranges").orElse("").equalsIgnoreCase("bytes")) return 1;
+        if (head.headers().firstValue("Content-Encoding").isPresent()) return 1;
+        long length = head.headers().firstValueAsLong("Content-Length").orElse(-1);
+        if (length <= 0) return 1;
+        return (int) Math.min(maxSegments, length / MIN_SEGMENT_SIZE);
+    }
+
+    private CompletableFuture<StagedArtifact> fetch(UpdateClient.UpdateVersion version, Path staging,
+                                                    HashAlgorithm algorithm, PartialDownload partial,
+                                                    long offset, MessageDigest digest) {
+        HttpRequest.Builder builder = transport.newRequest(sourceOf(version)).GET();
+        if (offset > 0) {
+            builder.header("Range", "bytes=" + offset + "-");
+            if (partial.validator != null) {
+                builder.header("If-Range", partial.validator);
+            }
+        }
+
+        Attempt attempt = new Attempt();
+        CompletableFuture<HttpResponse<StagedArtifact>> exchange = transport.sendAsync(builder.build(), info -> {
+                    long start;
+                    if (info.statusCode() == 200) {
+                        start = 0;
+                    } else if (info.statusCode() == 206 && offset > 0 && rangeStart(info.headers()) == offset) {
+                        start = offset;
+                    } else {
+                        return HttpResponse.BodySubscribers.replacing(null);
+                    }
+                    HashingFileSubscriber writer = attempt.begin(() -> {
+                        partial.validator = PartialDownload.validatorOf(info.headers());
+                        partial.expectedSize = expectedSize(info, start);
+                        try {
+                            partial.save(staging);
+                        } catch (IOException ignored) {
+                            // Without a sidecar the download still works, it just cannot be resumed.
+                        }
+                        return new HashingFileSubscriber(staging, algorithm,
+                                start == 0 ? algorithm.newDigest() : digest, start);
+                    });
+                    return writer != null ? writer : HttpResponse.BodySubscribers.replacing(null);
+                });
+        // Bounds a stalled transfer; the bytes received so far stay for the retry to resume from
+        return RequestGuard.withTimeout(exchange, Duration.ofSeconds(config.getDownloadTimeoutSeconds()), attempt::end)
+                .whenComplete((response, error) -> {
+                    if (error != null) attempt.end();
+                })
+                .thenCompose(response -> {
+                    int status = response.statusCode();
+                    if (status == 416 && offset > 0) {
+                        // The partial file no longer fits the resource, start over.
+                        PartialDownload.delete(staging);
+                        PartialDownload fresh = new PartialDownload(partial.url, partial.algorithm, partial.hash);
+                        return fetch(version, staging, algorithm, fresh, 0, algorithm.newDigest());
+                    }
+                    if (response.body() == null) {
+                        if (status == 206) PartialDownload.delete(staging);
+                        throw new CompletionException(new DownloadException("Unexpected status " + status, status));
+                    }
+                    return CompletableFuture.completedFuture(verify(response.body(), staging, partial));
+                });
+    }
+
+    /**
+     * One exchange writing to the staging file. The retry reuses that file, so once the attempt
+     * has ended a response that is still arriving must neither start a writer nor keep one going.
+     */
+    private static final class Attempt {
+        private boolean ended;
+        private HashingFileSubscriber writer;
+
+        /**
+         * @return the writer {@code start} created, or null if the attempt already ended
+         */
+        synchronized HashingFileSubscriber begin(Supplier<HashingFileSubscriber> start) {
+            if (ended) return null;
+            writer = start.get();
+            return writer;
+        }
+
+        /**
+         * Returns once nothing of this attempt writes to the staging file any more.
+         */
+        synchronized void end() {
+            ended = true;
+            if (writer != null) writer.abort();
+        }
+    }
+
+    private static StagedArtifact verify(StagedArtifact result, Path staging, PartialDownload partial) {
+        if (partial.expectedSize >= 0 && result.size() != partial.expectedSize) {
+            // Keep the partial file, the next attempt resumes from where this one stopped.
+            throw new CompletionException(new IOException(
+                    "Connection closed after " + result.size() + " of " + partial.expectedSize + " bytes"));
+        }
+        if (partial.hash != null && !partial.hash.equalsIgnoreCase(result.hash())) {
+            PartialDownload.delete(staging);
+            throw new CompletionException(new DownloadException(
+                    "Checksum mismatch: expected " + partial.hash + ", got " + result.hash()));
+        }
+        PartialDownload.deleteSidecar(staging);
+        return result;
+    }
+
+    /**
+     * Returns how many bytes of an earlier attempt can be reused, discarding the partial
+     * file when it belongs to a different artifact or cannot be resumed safely.
+     */
+    private static long resumableLength(Path staging, PartialDownload wanted) throws IOException {
+        PartialDownload existing = PartialDownload.load(staging);
+        if (existing == null || !existing.matches(wanted) || !existing.isResumable() || !Files.isRegularFile(staging)) {
+            PartialDownload.delete(staging);
+            return 0;
+        }
+        long length = Files.size(staging);
+        if (existing.expectedSize >= 0 && length > existing.expectedSize) {
+            PartialDownload.delete(staging);
+            return 0;
+        }
+        wanted.validator = existing.validator;
+        wanted.expectedSize = existing.expectedSize;
+        return length;
+    }
+
+    private static MessageDigest digestPrefix(Path file, HashAlgorithm algorithm, long length) throws IOException {
+        MessageDigest digest = algorithm.newDigest();
+        ByteBuffer buffer = ByteBuffer.allocate(PREFIX_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long remaining = length;
+            while (remaining > 0) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), remaining));
+                int read = channel.read(buffer);
+                if (read < 0) throw new IOException("Partial file shrank while resuming: " + file);
+                buffer.flip();
+                digest.update(buffer);
+                remaining -= read;
+            }
+        }
+        return digest;
+    }
+
+    /**
+     * @return the first byte position of a {@code Content-Range: bytes a-b/total} header, or -1
+     */
+    static long rangeStart(HttpHeaders headers) {
+        String range = headers.firstValue("Content-Range").orElse(null);
+        if (range == null || !range.startsWith("bytes ")) return -1;
+        int dash = range.indexOf('-');
+        if (dash < 0) return -1;
+        try {
+            return Long.parseLong(range.substring(6, dash).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the complete length of the resource, or -1 if the server did not say
+     */
+    private static long expectedSize(HttpResponse.ResponseInfo info, long start) {
+        if (info.statusCode() == 206) {
+            String range = info.headers().firstValue("Content-Range").orElse("");
+            int slash = range.indexOf('/');
+            if (slash < 0) return -1;
+            try {
+                return Long.parseLong(range.substring(slash + 1).trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        long length = info.headers().firstValueAsLong("Content-Length").orElse(-1);
+        return length < 0 ? -1 : start + length;
+    }
+}
@@ -0,0 +1,28 @@
+package cn.lemwood.geyserupdater.common.download;
+
+import java.io.IOException;
+
+/**
+ * Raised when a download is rejected, either by the server or by checksum verification.
+ */
+public class DownloadException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    public DownloadException(String message) {
+        this(message, -1);
+    }
+
+    public DownloadException(String message, int statusCode) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * @return the HTTP status that caused the failure, or -1 if the failure was not an HTTP error
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
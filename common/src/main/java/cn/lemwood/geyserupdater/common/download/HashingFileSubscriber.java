@@ -0,0 +1,130 @@
+package cn.lemwood.geyserupdater.common.download;
+
+import cn.lemwood.geyserupdater.common.hash.HashAlgorithm;
+import cn.lemwood.geyserupdater.common.hash.Hex;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Writes a response body straight into a file while feeding the same buffers to a digest,
+ * so every byte is read from the network and written to disk exactly once.
+ * <p>
+ * When resuming, the file is truncated to {@code offset} and the body is appended after it;
+ * the digest must then already contain those first {@code offset} bytes. On failure the
+ * file is left in place so the caller can resume from it.
+ * <p>
+ * Cancelling the exchange does not stop the client from delivering buffers it already has,
+ * so a caller that gives up on a transfer calls {@link #abort()}; once that returns, nothing
+ * more is written to the file.
+ */
+class HashingFileSubscriber implements HttpResponse.BodySubscriber<StagedArtifact> {
+    private final Path file;
+    private final HashAlgorithm algorithm;
+    private final MessageDigest digest;
+    private final CompletableFuture<StagedArtifact> result = new CompletableFuture<>();
+    private FileChannel channel;
+    private Flow.Subscription subscription;
+    private final long offset;
+    private long size;
+    private boolean aborted;
+
+    HashingFileSubscriber(Path file, HashAlgorithm algorithm) {
+        this(file, algorithm, algorithm.newDigest(), 0);
+    }
+
+    HashingFileSubscriber(Path file, HashAlgorithm algorithm, MessageDigest digest, long offset) {
+        this.file = file;
+        this.algorithm = algorithm;
+        this.digest = digest;
+        this.offset = offset;
+    }
+
+    @Override
+    public CompletionStage<StagedArtifact> getBody() {
+        return result;
+    }
+
+    @Override
+    public synchronized void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        if (aborted) {
+            subscription.cancel();
+            return;
+        }
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            channel.truncate(offset);
+            channel.position(offset);
+            size = offset;
+        } catch (IOException e) {
+            subscription.cancel();
+            fail(e);
+            return;
+        }
+        subscription.request(1);
+    }
+
+    @Override
+    public synchronized void onNext(List<ByteBuffer> buffers) {
+        if (aborted) return;
+        try {
+            for (ByteBuffer buffer : buffers) {
+                digest.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    size += channel.write(buffer);
+                }
+            }
+            subscription.request(1);
+        } catch (IOException e) {
+            subscription.cancel();
+            fail(e);
+        }
+    }
+
+    @Override
+    public synchronized void onError(Throwable throwable) {
+        fail(throwable);
+    }
+
+    @Override
+    public synchronized void onComplete() {
+        if (aborted) return;
+        try {
+            channel.force(false);
+            channel.close();
+            result.complete(new StagedArtifact(file, size, algorithm, Hex.encode(digest.digest())));
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Stops writing: the subscription is cancelled and the file closed, unless the body
+     * already completed.
+     */
+    synchronized void abort() {
+        if (aborted || result.isDone()) return;
+        aborted = true;
+        if (subscription != null) subscription.cancel();
+        fail(new CancellationException("Download aborted"));
+    }
+
+    private void fail(Throwable throwable) {
+        try {
+            if (channel != null) channel.close();
+        } catch (IOException ignored) {
+        }
+        result.completeExceptionally(throwable);
+    }
+}
@@ -0,0 +1,105 @@
+package cn.lemwood.geyserupdater.common.download;
+
+import cn.lemwood.geyserupdater.common.util.AtomicFiles;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Sidecar stored next to a {@code .part} file describing what the partial bytes belong to,
+ * so an interrupted download can be resumed with a {@code Range} request on the next run.
+ */
+class PartialDownload {
+    static final String SIDECAR_SUFFIX = ".json";
+    private static final int FORMAT_VERSION = 1;
+    private static final Gson GSON = new Gson();
+
+    int formatVersion = FORMAT_VERSION;
+    String url;
+    String algorithm;
+    String hash;
+    long expectedSize = -1;
+    String validator;
+
+    PartialDownload() {
+    }
+
+    PartialDownload(String url, String algorithm, String hash) {
+        this.url = url;
+        this.algorithm = algorithm;
+        this.hash = hash;
+    }
+
+    static Path sidecarOf(Path staging) {
+        return staging.resolveSibling(staging.getFileName() + SIDECAR_SUFFIX);
+    }
+
+    /**
+     * @return the sidecar for {@code staging}, or null if it is missing or unreadable
+     */
+    static PartialDownload load(Path staging) {
+        try {
+            String json = Files.readString(sidecarOf(staging), StandardCharsets.UTF_8);
+            PartialDownload partial = GSON.fromJson(json, PartialDownload.class);
+            if (partial == null || partial.formatVersion != FORMAT_VERSION) return null;
+            return partial;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | JsonParseException e) {
+            return null;
+        }
+    }
+
+    void save(Path staging) throws IOException {
+        AtomicFiles.writeString(sidecarOf(staging), GSON.toJson(this));
+    }
+
+    static void deleteSidecar(Path staging) {
+        try {
+            Files.deleteIfExists(sidecarOf(staging));
+        } catch (IOException ignored) {
+        }
+    }
+
+    static void delete(Path staging) {
+        try {
+            Files.deleteIfExists(staging);
+            Files.deleteIfExists(sidecarOf(staging));
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * The partial bytes can only be reused for the same URL and the same expected content.
+     */
+    boolean matches(PartialDownload other) {
+        return Objects.equals(url, other.url)
+                && Objects.equals(algorithm, other.algorithm)
+                && Objects.equals(hash, other.hash);
+    }
+
+    /**
+     * A range is only safe to resume when either the server can validate it via
+     * {@code If-Range}, or the final checksum will catch a changed resource.
+     */
+    boolean isResumable() {
+        return validator != null || hash != null;
+    }
+
+    /**
+     * Picks the validator for {@code If-Range}. Weak ETags are not allowed there, so
+     * Last-Modified is used instead when the ETag is weak.
+     */
+    static String validatorOf(HttpHeaders headers) {
+        String etag = headers.firstValue("ETag").orElse(null);
+        if (etag != null && !etag.startsWith("W/")) return etag;
+        return headers.firstValue("Last-Modified").orElse(null);
+    }
+}
@@ -0,0 +1,80 @@
+package cn.lemwood.geyserupdater.common.download;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.function.LongConsumer;
+
+/**
+ * Writes one byte range of a response into a shared file with positional writes, so several
+ * ranges of the same artifact can be received at once without coordinating file offsets.
+ */
+class PositionalFileSubscriber implements HttpResponse.BodySubscriber<Long> {
+    private final FileChannel channel;
+    private final long start;
+    private final long length;
+    private final LongConsumer progress;
+    private final CompletableFuture<Long> result = new CompletableFuture<>();
+    private Flow.Subscription subscription;
+    private long written;
+
+    /**
+     * @param progress receives the total number of bytes written so far after every chunk
+     */
+    PositionalFileSubscriber(FileChannel channel, long start, long length, LongConsumer progress) {
+        this.channel = channel;
+        this.start = start;
+        this.length = length;
+        this.progress = progress;
+    }
+
+    @Override
+    public CompletionStage<Long> getBody() {
+        return result;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> buffers) {
+        try {
+            for (ByteBuffer buffer : buffers) {
+                if (written + buffer.remaining() > length) {
+                    throw new IOException("Server sent more than the requested " + length + " bytes");
+                }
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer, start + written);
+                }
+            }
+            progress.accept(written);
+            subscription.request(1);
+        } catch (IOException e) {
+            subscription.cancel();
+            result.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        if (written != length) {
+            result.completeExceptionally(new IOException(
+                    "Range ended after " + written + " of " + length + " bytes"));
+        } else {
+            result.complete(written);
+        }
+    }
+}
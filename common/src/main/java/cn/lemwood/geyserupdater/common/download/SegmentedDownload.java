@@ -0,0 +1,135 @@
+package cn.lemwood.geyserupdater.common.download;
+
+import cn.lemwood.geyserupdater.common.http.HttpTransport;
+import cn.lemwood.geyserupdater.common.http.RequestGuard;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A single download split into byte ranges that are fetched concurrently into one
+ * preallocated staging file.
+ * <p>
+ * No sidecar is written while the ranges are in flight, because the preallocated file says
+ * nothing about which bytes have arrived. If a range fails, the file is cut back to the
+ * contiguous prefix that did arrive and a {@link PartialDownload} is saved, so the next
+ * attempt resumes it as an ordinary single-stream download.
+ */
+class SegmentedDownload {
+    private final HttpTransport transport;
+    private final URI uri;
+    private final Path staging;
+    private final PartialDownload partial;
+    private final long[] starts;
+    private final long[] lengths;
+    private final AtomicLongArray written;
+    private final Duration timeout;
+
+    SegmentedDownload(HttpTransport transport, URI uri, Path staging, PartialDownload partial, int segments,
+                      Duration timeout) {
+        this.transport = transport;
+        this.timeout = timeout;
+        this.uri = uri;
+        this.staging = staging;
+        this.partial = partial;
+        this.starts = new long[segments];
+        this.lengths = new long[segments];
+        this.written = new AtomicLongArray(segments);
+        long total = partial.expectedSize;
+        long segmentSize = (total + segments - 1) / segments;
+        for (int i = 0; i < segments; i++) {
+            starts[i] = i * segmentSize;
+            lengths[i] = Math.min(segmentSize, total - starts[i]);
+        }
+    }
+
+    CompletableFuture<Void> run() {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(staging, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        try {
+            // Preallocate so positional writes never have to grow the file concurrently.
+            channel.write(ByteBuffer.wrap(new byte[1]), partial.expectedSize - 1);
+        } catch (IOException e) {
+            closeQuietly(channel);
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[starts.length];
+        for (int i = 0; i < starts.length; i++) {
+            futures[i] = fetchRange(channel, i);
+        }
+        return CompletableFuture.allOf(futures).handle((ignored, error) -> {
+            try {
+                if (error == null) channel.force(false);
+            } catch (IOException e) {
+                error = e;
+            } finally {
+                closeQuietly(channel);
+            }
+            if (error == null) return null;
+            keepContiguousPrefix();
+            throw error instanceof CompletionException ce ? ce : new CompletionException(error);
+        });
+    }
+
+    private CompletableFuture<Void> fetchRange(FileChannel channel, int index) {
+        long start = starts[index];
+        long end = start + lengths[index] - 1;
+        HttpRequest.Builder builder = transport.newRequest(uri).GET()
+                .header("Range", "bytes=" + start + "-" + end);
+        if (partial.validator != null) {
+            builder.header("If-Range", partial.validator);
+        }
+        return RequestGuard.withTimeout(transport.sendAsync(builder.build(), info ->
+                        info.statusCode() == 206 && ArtifactDownloader.rangeStart(info.headers()) == start
+                                ? new PositionalFileSubscriber(channel, start, lengths[index], n -> written.set(index, n))
+                                : HttpResponse.BodySubscribers.replacing(null)), timeout)
+                .thenAccept(response -> {
+                    if (response.body() == null) {
+                        // A 200 here means the resource changed since it was probed, or ranges were ignored.
+                        throw new CompletionException(new IOException(
+                                "Range request for bytes " + start + "-" + end + " answered with status " + response.statusCode()));
+                    }
+                });
+    }
+
+    private void keepContiguousPrefix() {
+        long prefix = 0;
+        for (int i = 0; i < starts.length; i++) {
+            prefix += written.get(i);
+            if (written.get(i) < lengths[i]) break;
+        }
+        if (prefix == 0 || !partial.isResumable()) {
+            PartialDownload.delete(staging);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(staging, StandardOpenOption.WRITE)) {
+            channel.truncate(prefix);
+            partial.save(staging);
+        } catch (IOException e) {
+            PartialDownload.delete(staging);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
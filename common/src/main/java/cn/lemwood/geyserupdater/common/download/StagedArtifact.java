@@ -0,0 +1,15 @@
+package cn.lemwood.geyserupdater.common.download;
+
+import cn.lemwood.geyserupdater.common.hash.HashAlgorithm;
+
+import java.nio.file.Path;
+
+/**
+ * A downloaded and verified file waiting to be moved into place.
+ * @param file The staging file
+ * @param size Number of bytes written
+ * @param algorithm The algorithm of {@code hash}
+ * @param hash Digest of the written bytes, computed while downloading
+ */
+public record StagedArtifact(Path file, long size, HashAlgorithm algorithm, String hash) {
+}
@@ -1,28 +1,48 @@
 package cn.lemwood.geyserupdater.common.geyser;
 
 import cn.lemwood.geyserupdater.common.api.UpdateClient;
+import cn.lemwood.geyserupdater.common.config.ConfigManager;
+import cn.lemwood.geyserupdater.common.http.EndpointSelector;
+import cn.lemwood.geyserupdater.common.http.HttpTransport;
+import cn.lemwood.geyserupdater.common.http.MetadataCache;
 import cn.lemwood.geyserupdater.common.platform.PlatformAdapter;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 public class GeyserDownloadClient implements UpdateClient {
-    private static final String BASE_URL = "https://download.geysermc.org/v2";
-    private final HttpClient httpClient;
+    public static final String BASE_URL = "https://download.geysermc.org/v2";
+    private final HttpTransport transport;
+    private final EndpointSelector endpoints;
+    private final MetadataCache metadataCache;
     private final Gson gson;
     private final PlatformAdapter platform;
+    private final ConfigManager config;
 
-    public GeyserDownloadClient(PlatformAdapter platform) {
+    public GeyserDownloadClient(PlatformAdapter platform, ConfigManager config, HttpTransport transport,
+                                EndpointSelector endpoints, MetadataCache metadataCache) {
         this.platform = platform;
-        this.httpClient = HttpClient.newHttpClient();
+        this.config = config;
+        this.transport = transport;
+        this.endpoints = endpoints;
+        this.metadataCache = metadataCache;
         this.gson = new Gson();
     }
 
+    @Override
+    public Collection<URI> getEndpoints() {
+        List<URI> uris = new ArrayList<>();
+        endpoints.getBases().forEach(base -> uris.add(URI.create(base)));
+        return uris;
+    }
+
     @Override
     public CompletableFuture<UpdateVersion> getLatestVersion(String projectId) {
         // Project ID mapping for Geyser API
@@ -32,16 +52,25 @@ public class GeyserDownloadClient implements UpdateClient {
             default -> projectId;
         };
 
-        String url = String.format("%s/projects/%s/versions/latest/builds/latest", BASE_URL, geyserProject);
+        if (getGeyserPlatformKey(projectId) == null) {
+            // Not published on the Downloads API; the composite client routes it elsewhere
+            return CompletableFuture.completedFuture(null);
+        }
+
+        String path = String.format("/projects/%s/versions/latest/builds/latest", geyserProject);
 
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(url))
-                .header("User-Agent", "lemwood/GeyserUpdater/1.0.0 (leemwood@example.com)")
-                .GET()
-                .build();
+        // Keyed by the official URL whichever endpoint answers, so switching mirrors keeps the cache
+        String cacheKey = BASE_URL + path + "#" + getGeyserPlatformKey(projectId);
 
-        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+        return endpoints.send(base -> {
+                    HttpRequest.Builder builder = transport.newRequest(URI.create(base + path)).GET();
+                    metadataCache.applyValidators(cacheKey, builder);
+                    return builder.build();
+                }, HttpResponse.BodyHandlers.ofString())
                 .thenApply(response -> {
+                    if (metadataCache.isNotModified(cacheKey, response)) {
+                        return metadataCache.getVersion(cacheKey);
+                    }
                     if (response.statusCode() != 200) {
                         platform.warn("Failed to fetch Geyser updates for " + projectId + ": " + response.statusCode());
                         return null;
@@ -50,21 +79,14 @@ public class GeyserDownloadClient implements UpdateClient {
                     try {
                         JsonObject buildObj = gson.fromJson(response.body(), JsonObject.class);
                         UpdateVersion version = new UpdateVersion();
-                        
-                        // Build number as version, or try to construct a semantic version if available?
-                        // Geyser API returns "build": 123.
-                        // The "version" field in URL is just "latest".
-                        // Actually, the response might not contain the semantic version string directly in root?
-                        // Let's check the response structure from previous tool output (user provided).
-                        // User didn't provide full JSON, just "downloads".
-                        // Usually Geyser API v2 returns: {"build": 123, "time": "...", "channel": "standalone", "promoted": true, "changes": [...], "downloads": {...}}
-                        // It doesn't explicitly say "2.2.0-SNAPSHOT".
-                        // However, for version comparison, build number is actually better if we track it.
-                        // But existing logic compares string versions.
-                        // Let's use the build number as version for now, prefixed with "build-".
-                        
+
+                        // Builds are numbered across versions, so the build number is what gets compared
                         int build = buildObj.get("build").getAsInt();
                         version.versionNumber = String.valueOf(build);
+                        version.build = build;
+                        // "latest" may move on between this call and the download, so pin the
+                        // download to the version and build that were just described
+                        String pinnedVersion = buildObj.has("version") ? buildObj.get("version").getAsString() : null;
 
                         JsonObject downloads = buildObj.getAsJsonObject("downloads");
                         String platformKey = getGeyserPlatformKey(projectId);
@@ -72,17 +94,18 @@ public class GeyserDownloadClient implements UpdateClient {
                         if (downloads.has(platformKey)) {
                             JsonObject downloadInfo = downloads.getAsJsonObject(platformKey);
                             version.filename = downloadInfo.get("name").getAsString();
-                            // Construct download URL manually as it's standard
-                            // /v2/projects/{project}/versions/{version}/builds/{build}/downloads/{download}
-                            // We used "latest" for version in request, but for download url we should probably use "latest" too or specific version?
-                            // Actually we can just append to the base URL structure.
-                            version.downloadUrl = String.format("%s/projects/%s/versions/latest/builds/latest/downloads/%s", 
-                                    BASE_URL, geyserProject, platformKey);
+                            // The official URL is kept; the downloader moves it onto the fastest mirror.
+                            version.downloadUrl = pinnedVersion != null
+                                    ? String.format("%s/projects/%s/versions/%s/builds/%d/downloads/%s",
+                                            BASE_URL, geyserProject, pinnedVersion, build, platformKey)
+                                    : String.format("%s/projects/%s/versions/latest/builds/latest/downloads/%s",
+                                            BASE_URL, geyserProject, platformKey);
                             
                             if (downloadInfo.has("sha256")) {
                                 version.sha256 = downloadInfo.get("sha256").getAsString();
                             }
                             
+                            metadataCache.store(cacheKey, response.headers(), version);
                             return version;
                         } else {
                             platform.warn("Geyser platform '" + platformKey + "' not found in downloads for " + projectId);
@@ -95,21 +118,9 @@ public class GeyserDownloadClient implements UpdateClient {
     }
 
     private String getGeyserPlatformKey(String projectId) {
-        // If checking for GeyserExtras, it might not follow the same structure or be available here.
-        // GeyserExtras is a separate project.
-        // The URL used above is for "geyser" or "floodgate".
-        // GeyserExtras might need to use Modrinth or GitHub if not on Geyser Downloads API.
-        // But user request is "use official api for standalone version".
-        // Geyser Standalone needs Geyser-Standalone.jar.
-        // Floodgate is also on Downloads API.
-        
         if ("geyserextras".equals(projectId)) {
-            // GeyserExtras is not on download.geysermc.org usually?
-            // It is on Modrinth.
-            // So we should probably fallback or handle it?
-            // But UpdateClient is per-instance.
-            // We might need a CompositeClient or handle this in getLatestVersion.
-            return null; 
+            // Only published on Modrinth
+            return null;
         }
 
         String loader = platform.getModrinthLoader();
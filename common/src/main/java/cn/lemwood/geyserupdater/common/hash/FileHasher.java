@@ -0,0 +1,114 @@
+package cn.lemwood.geyserupdater.common.hash;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hashes files through {@link FileChannel}s on a small bounded pool.
+ * <p>
+ * Files are read through pooled 1 MiB direct buffers. They are deliberately not
+ * memory-mapped: a mapping stays alive until it is garbage collected, and on Windows a mapped
+ * file can't be renamed or deleted, which would break moving a just-verified download into place.
+ */
+public class FileHasher {
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final ExecutorService executor;
+    private final BlockingQueue<ByteBuffer> buffers;
+    private final LongAdder bytesHashed = new LongAdder();
+    private final LongAdder nanosSpent = new LongAdder();
+    private final LongAdder filesHashed = new LongAdder();
+
+    public FileHasher() {
+        this(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())));
+    }
+
+    public FileHasher(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "GeyserUpdater-Hasher-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.buffers = new ArrayBlockingQueue<>(threads);
+    }
+
+    /**
+     * Hashes a file on the calling thread.
+     * @return lowercase hex digest
+     */
+    public String hash(Path file, HashAlgorithm algorithm) throws IOException {
+        long start = System.nanoTime();
+        MessageDigest digest = algorithm.newDigest();
+        long size;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = channel.size();
+            ByteBuffer buffer = acquireBuffer();
+            try {
+                while (channel.read(buffer) != -1) {
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.clear();
+                }
+            } finally {
+                releaseBuffer(buffer);
+            }
+        }
+        bytesHashed.add(size);
+        nanosSpent.add(System.nanoTime() - start);
+        filesHashed.increment();
+        return Hex.encode(digest.digest());
+    }
+
+    /**
+     * Hashes a file on the hashing pool, so several files can be hashed in parallel.
+     */
+    public CompletableFuture<String> hashAsync(Path file, HashAlgorithm algorithm) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return hash(file, algorithm);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    private ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = buffers.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    private void releaseBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        buffers.offer(buffer);
+    }
+
+    /**
+     * @return a one-line summary of everything hashed so far, for debug output
+     */
+    public String getThroughputReport() {
+        long bytes = bytesHashed.sum();
+        long nanos = nanosSpent.sum();
+        double mb = bytes / (1024.0 * 1024.0);
+        double seconds = nanos / 1_000_000_000.0;
+        double rate = seconds > 0 ? mb / seconds : 0;
+        return String.format("Hashed %d file(s), %.1f MB in %d ms (%.1f MB/s)",
+                filesHashed.sum(), mb, nanos / 1_000_000, rate);
+    }
+
+    public void close() {
+        executor.shutdownNow();
+    }
+}
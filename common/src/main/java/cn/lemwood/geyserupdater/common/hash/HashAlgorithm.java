@@ -0,0 +1,39 @@
+package cn.lemwood.geyserupdater.common.hash;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Checksum algorithms published by the update sources.
+ * Modrinth advertises SHA-1 and SHA-512, the Geyser Downloads API advertises SHA-256.
+ */
+public enum HashAlgorithm {
+    SHA1("SHA-1", "sha1"),
+    SHA256("SHA-256", "sha256"),
+    SHA512("SHA-512", "sha512");
+
+    private final String jcaName;
+    private final String key;
+
+    HashAlgorithm(String jcaName, String key) {
+        this.jcaName = jcaName;
+        this.key = key;
+    }
+
+    /**
+     * @return the name used by APIs and cache files, e.g. "sha512"
+     */
+    public String getKey() {
+        return key;
+    }
+
+    public MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(jcaName);
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-1 and SHA-256 are required of every Java platform. SHA-512 isn't, but the SUN
+            // provider of every mainstream JDK has it
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package cn.lemwood.geyserupdater.common.http;
+
+/**
+ * Tracks the health of one endpoint and stops sending requests to it while it is failing.
+ * <p>
+ * After {@code threshold} consecutive failures the breaker opens and every request fails
+ * immediately. Once the open period has passed, a single trial request is let through:
+ * success closes the breaker again, failure reopens it for another period.
+ */
+public class CircuitBreaker {
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int threshold;
+    private final long openMillis;
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean probing;
+
+    public CircuitBreaker(int threshold, long openMillis) {
+        this.threshold = Math.max(1, threshold);
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * @return true if a request may be sent now
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openMillis) return false;
+            state = State.HALF_OPEN;
+            probing = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probing) return false;
+            probing = true;
+        }
+        return true;
+    }
+
+    /**
+     * Records a request the endpoint answered properly.
+     * @return true if this closed the breaker
+     */
+    public synchronized boolean onSuccess() {
+        boolean closed = state != State.CLOSED;
+        state = State.CLOSED;
+        failures = 0;
+        probing = false;
+        return closed;
+    }
+
+    /**
+     * Records a request that failed because of the endpoint.
+     * @return true if this opened the breaker
+     */
+    public synchronized boolean onFailure() {
+        probing = false;
+        if (state == State.OPEN) return false;
+        if (state == State.HALF_OPEN || ++failures >= threshold) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the trial slot of a request that ended without telling anything about the
+     * endpoint, e.g. because it was never sent.
+     */
+    public synchronized void release() {
+        probing = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return milliseconds until a trial request is allowed, 0 unless the breaker is open
+     */
+    public synchronized long getRetryInMillis() {
+        if (state != State.OPEN) return 0;
+        return Math.max(0, openedAt + openMillis - System.currentTimeMillis());
+    }
+}
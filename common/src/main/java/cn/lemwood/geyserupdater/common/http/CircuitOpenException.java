@@ -0,0 +1,21 @@
+package cn.lemwood.geyserupdater.common.http;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of sending a request while the circuit breaker for its host is open.
+ */
+public class CircuitOpenException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final long retryInMillis;
+
+    public CircuitOpenException(String host, long retryInMillis) {
+        super(host + " is failing, requests paused for another " + (retryInMillis + 999) / 1000 + " s");
+        this.retryInMillis = retryInMillis;
+    }
+
+    public long getRetryInMillis() {
+        return retryInMillis;
+    }
+}
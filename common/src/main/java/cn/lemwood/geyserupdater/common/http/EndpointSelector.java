@@ -0,0 +1,320 @@
+package cn.lemwood.geyserupdater.common.http;
+
+import cn.lemwood.geyserupdater.common.config.ConfigManager;
+import cn.lemwood.geyserupdater.common.platform.PlatformAdapter;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Picks which of several equivalent base URLs (the official API and its mirrors) a request goes to.
+ * <p>
+ * Latency and throughput are tracked per endpoint as exponentially weighted moving averages,
+ * and each request goes to the endpoint expected to answer fastest among those whose circuit
+ * breaker is not open. As its samples age, an endpoint's score decays toward the average of
+ * all measured endpoints, so a fresh measurement outweighs one from hours ago while the
+ * ranking from the last check still holds. An endpoint never measured starts at that average.
+ * <p>
+ * Metadata requests can be hedged: if the chosen endpoint hasn't answered within its p95
+ * latency, the same request is also sent to the runner-up and whichever answers first wins.
+ * A failed request falls over to the runner-up straight away.
+ */
+public class EndpointSelector {
+    private static final double ALPHA = 0.3;
+    private static final int WINDOW = 32;
+    private static final int MIN_P95_SAMPLES = 8;
+    private static final long HALF_LIFE_MILLIS = 30 * 60_000L;
+
+    private final PlatformAdapter platform;
+    private final ConfigManager config;
+    private final RequestGuard guard;
+    private final String source;
+    private final String officialBase;
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * @param source the config key of this source's endpoint list and its route on a LAN mirror
+     * @param officialBase used when no endpoints are configured
+     */
+    public EndpointSelector(PlatformAdapter platform, ConfigManager config, RequestGuard guard,
+                            String source, String officialBase) {
+        this.platform = platform;
+        this.config = config;
+        this.guard = guard;
+        this.source = source;
+        this.officialBase = officialBase;
+    }
+
+    /**
+     * @return every configured base URL, the LAN mirror first if there is one
+     */
+    public List<String> getBases() {
+        Set<String> bases = new LinkedHashSet<>();
+        String mirror = config.getMirrorUrl();
+        if (mirror != null) bases.add(mirror + "/" + source + "/v2");
+        for (String base : config.getEndpoints(source)) {
+            bases.add(base.endsWith("/") ? base.substring(0, base.length() - 1) : base);
+        }
+        if (bases.isEmpty()) bases.add(officialBase);
+        return new ArrayList<>(bases);
+    }
+
+    /**
+     * @return the bases ordered from fastest to slowest, skipping hosts whose breaker is open
+     */
+    public List<String> ranked() {
+        List<String> bases = getBases();
+        List<String> healthy = new ArrayList<>();
+        for (String base : bases) {
+            if (guard.isAvailable(URI.create(base).getHost())) healthy.add(base);
+        }
+        // With every endpoint down, keep going so the guard reports why
+        List<String> ranked = healthy.isEmpty() ? bases : healthy;
+        long now = System.currentTimeMillis();
+        double prior = averageScore(ranked);
+        ranked.sort(Comparator.comparingDouble(base -> score(base, now, prior)));
+        return ranked;
+    }
+
+    /**
+     * Rewrites {@code url} onto the fastest endpoint if it points at one of this source's
+     * bases, e.g. a Geyser download URL onto a regional mirror.
+     */
+    public String rebase(String url) {
+        List<String> bases = getBases();
+        for (String base : bases) {
+            if (url.startsWith(base + "/")) {
+                return ranked().get(0) + url.substring(base.length());
+            }
+        }
+        if (url.startsWith(officialBase + "/")) {
+            return ranked().get(0) + url.substring(officialBase.length());
+        }
+        return url;
+    }
+
+    public <T> CompletableFuture<HttpResponse<T>> send(Function<String, HttpRequest> request,
+                                                       HttpResponse.BodyHandler<T> handler) {
+        return send(request, handler, () -> CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * Sends a request built for the best endpoint, hedging to the runner-up if enabled.
+     * @param request builds the request for a base URL
+     * @param permit runs before every attempt, e.g. to take a rate limit token
+     */
+    public <T> CompletableFuture<HttpResponse<T>> send(Function<String, HttpRequest> request,
+                                                       HttpResponse.BodyHandler<T> handler,
+                                                       Supplier<CompletableFuture<Void>> permit) {
+        List<String> ranked = ranked();
+        if (ranked.size() < 2) return attempt(ranked.get(0), request, handler, permit);
+
+        String primary = ranked.get(0);
+        String runnerUp = ranked.get(1);
+        CompletableFuture<HttpResponse<T>> winner = new CompletableFuture<>();
+        AtomicBoolean secondStarted = new AtomicBoolean();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        AtomicReference<Object> firstFailure = new AtomicReference<>();
+
+        AtomicReference<Runnable> startSecond = new AtomicReference<>();
+        BiConsumer<HttpResponse<T>, Throwable> settle = (response, error) -> {
+            boolean good = error == null && !RequestGuard.isRetryableStatus(response.statusCode());
+            if (good) {
+                if (!winner.complete(response)) RequestGuard.discard(response);
+                return;
+            }
+            if (!firstFailure.compareAndSet(null, error != null ? error : response) && response != null) {
+                RequestGuard.discard(response);
+            }
+            startSecond.get().run();
+            if (outstanding.decrementAndGet() == 0) {
+                Object failure = firstFailure.get();
+                if (failure instanceof Throwable t) {
+                    winner.completeExceptionally(t);
+                } else {
+                    @SuppressWarnings("unchecked")
+                    HttpResponse<T> last = (HttpResponse<T>) failure;
+                    if (!winner.complete(last)) RequestGuard.discard(last);
+                }
+            }
+        };
+        startSecond.set(() -> {
+            if (winner.isDone() || !secondStarted.compareAndSet(false, true)) return;
+            outstanding.incrementAndGet();
+            attempt(runnerUp, request, handler, permit).whenComplete(settle);
+        });
+
+        attempt(primary, request, handler, permit).whenComplete(settle);
+        if (config.isHedgingEnabled()) {
+            long delay = hedgeDelayMillis(primary);
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> {
+                if (winner.isDone()) return;
+                if (config.isDebug()) {
+                    platform.info("No answer from " + primary + " within " + delay + " ms, hedging to " + runnerUp);
+                }
+                startSecond.get().run();
+            });
+        }
+        return winner;
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> attempt(String base, Function<String, HttpRequest> request,
+                                                           HttpResponse.BodyHandler<T> handler,
+                                                           Supplier<CompletableFuture<Void>> permit) {
+        // Timed from after the permit, so waiting for the rate limit doesn't count as latency.
+        // Retries inside the guard restart the clock.
+        AtomicLong started = new AtomicLong(System.nanoTime());
+        AtomicLong headersAt = new AtomicLong();
+        HttpResponse.BodyHandler<T> timed = info -> {
+            headersAt.set(System.nanoTime());
+            return handler.apply(info);
+        };
+        Supplier<CompletableFuture<Void>> timedPermit = () -> permit.get().thenRun(() -> started.set(System.nanoTime()));
+        HttpRequest built;
+        try {
+            built = request.apply(base);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return guard.send(built, timed, timedPermit).whenComplete((response, error) -> {
+            long now = System.nanoTime();
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                // A timeout or dead connection costs at least as long as it took to notice
+                if (RequestGuard.isTransient(cause)) {
+                    statsFor(base).record(TimeUnit.NANOSECONDS.toMillis(now - started.get()), -1, 0);
+                }
+                return;
+            }
+            long headers = headersAt.get() != 0 ? headersAt.get() : now;
+            long latency = TimeUnit.NANOSECONDS.toMillis(headers - started.get());
+            long bytes = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+            // Streamed bodies are still being read at this point, so only buffered ones give a throughput
+            long transfer = response.body() instanceof java.io.InputStream ? 0 : TimeUnit.NANOSECONDS.toMillis(now - headers);
+            statsFor(base).record(latency, bytes, transfer);
+        });
+    }
+
+    private long hedgeDelayMillis(String base) {
+        Stats s = stats.get(base);
+        long p95 = s != null ? s.p95() : -1;
+        return p95 > 0 ? p95 : config.getHedgeDelayMillis();
+    }
+
+    private double score(String base, long now, double prior) {
+        Stats s = stats.get(base);
+        return s != null ? s.score(now, prior) : prior;
+    }
+
+    /**
+     * @return the mean undecayed score of those of {@code bases} that have been measured, or 0
+     */
+    private double averageScore(List<String> bases) {
+        double total = 0;
+        int measured = 0;
+        for (String base : bases) {
+            Stats s = stats.get(base);
+            double score = s != null ? s.rawScore() : -1;
+            if (score >= 0) {
+                total += score;
+                measured++;
+            }
+        }
+        return measured > 0 ? total / measured : 0;
+    }
+
+    private Stats statsFor(String base) {
+        return stats.computeIfAbsent(base, b -> new Stats());
+    }
+
+    /**
+     * @return latency and throughput per endpoint that has been used, in configured order
+     */
+    public Map<String, Summary> getSummaries() {
+        Map<String, Summary> summaries = new LinkedHashMap<>();
+        for (String base : getBases()) {
+            Stats s = stats.get(base);
+            if (s != null) summaries.put(base, s.summary());
+        }
+        return summaries;
+    }
+
+    /**
+     * @param latencyMillis EWMA time until the response headers arrived
+     * @param p95Millis 95th percentile of recent latencies, or -1 with too few samples
+     * @param bytesPerSecond EWMA throughput, or 0 if not measured yet
+     */
+    public record Summary(long latencyMillis, long p95Millis, long bytesPerSecond) {
+    }
+
+    private static class Stats {
+        private final long[] window = new long[WINDOW];
+        private int count;
+        private double latency = -1;
+        private double throughput = -1;
+        private double size = -1;
+        private long lastSample;
+
+        synchronized void record(long latencyMillis, long bytes, long transferMillis) {
+            latency = latency < 0 ? latencyMillis : ALPHA * latencyMillis + (1 - ALPHA) * latency;
+            window[count++ % WINDOW] = latencyMillis;
+            if (bytes > 0 && transferMillis > 0) {
+                double rate = bytes * 1000.0 / transferMillis;
+                throughput = throughput < 0 ? rate : ALPHA * rate + (1 - ALPHA) * throughput;
+                size = size < 0 ? bytes : ALPHA * bytes + (1 - ALPHA) * size;
+            }
+            lastSample = System.currentTimeMillis();
+        }
+
+        /**
+         * Expected time for a typical response: latency plus its body at the measured throughput.
+         * @return the score, or -1 if there is no sample yet
+         */
+        synchronized double rawScore() {
+            if (latency < 0) return -1;
+            double transfer = throughput > 0 && size > 0 ? size * 1000 / throughput : 0;
+            return latency + transfer;
+        }
+
+        /**
+         * @return the {@link #rawScore()}, pulled toward {@code prior} by half for every half-life since the last sample
+         */
+        synchronized double score(long now, double prior) {
+            double raw = rawScore();
+            if (raw < 0) return prior;
+            double weight = Math.pow(0.5, Math.max(0, now - lastSample) / (double) HALF_LIFE_MILLIS);
+            return prior + (raw - prior) * weight;
+        }
+
+        synchronized long p95() {
+            int n = Math.min(count, WINDOW);
+            if (n < MIN_P95_SAMPLES) return -1;
+            long[] sorted = Arrays.copyOf(window, n);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.ceil(0.95 * n) - 1];
+        }
+
+        synchronized Summary summary() {
+            return new Summary(Math.round(Math.max(0, latency)), p95(), Math.round(Math.max(0, throughput)));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package cn.lemwood.geyserupdater.common.http;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Shared HTTP transport for all update traffic.
+ * <p>
+ * A single {@link HttpClient} is kept for the lifetime of the plugin so that every
+ * request to the same host reuses one keep-alive (and, where supported, HTTP/2
+ * multiplexed) connection instead of redoing DNS and TLS per request.
+ */
+public class HttpTransport {
+    public static final String USER_AGENT = "lemwood/GeyserUpdater/1.0.0 (leemwood@example.com)";
+    public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    public static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration SHUTDOWN_GRACE = Duration.ofSeconds(5);
+
+    private volatile HttpClient httpClient;
+    private volatile Duration connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private volatile Duration requestTimeout = DEFAULT_REQUEST_TIMEOUT;
+    private volatile boolean closed;
+
+    public HttpTransport() {
+        this.httpClient = createClient(connectTimeout);
+    }
+
+    private static HttpClient createClient(Duration connectTimeout) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(connectTimeout)
+                .build();
+    }
+
+    /**
+     * Applies the configured timeouts. The client is only rebuilt when the connect
+     * timeout actually changes, so connections opened by {@link #prewarm} survive.
+     */
+    public synchronized void configure(Duration connectTimeout, Duration requestTimeout) {
+        this.requestTimeout = requestTimeout;
+        if (!connectTimeout.equals(this.connectTimeout) && !closed) {
+            HttpClient old = httpClient;
+            this.connectTimeout = connectTimeout;
+            this.httpClient = createClient(connectTimeout);
+            old.shutdown();
+        }
+    }
+
+    /**
+     * Creates a request builder with the shared User-Agent and request timeout applied.
+     */
+    public HttpRequest.Builder newRequest(URI uri) {
+        return HttpRequest.newBuilder(uri)
+                .timeout(requestTimeout)
+                .header("User-Agent", USER_AGENT);
+    }
+
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new IllegalStateException("HTTP transport is closed"));
+        }
+        return httpClient.sendAsync(request, handler);
+    }
+
+    /**
+     * Opens connections to the given endpoints ahead of time so the TLS handshake is
+     * already done when the first real request is sent. Failures are ignored.
+     */
+    public CompletableFuture<Void> prewarm(Collection<URI> endpoints) {
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        for (URI endpoint : endpoints) {
+            HttpRequest request = newRequest(endpoint)
+                    .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                    .build();
+            futures.add(sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .exceptionally(e -> null));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Closes the transport, giving in-flight requests a short grace period.
+     */
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        HttpClient client = httpClient;
+        client.shutdown();
+        try {
+            if (!client.awaitTermination(SHUTDOWN_GRACE)) {
+                client.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            client.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+}
@@ -0,0 +1,150 @@
+package cn.lemwood.geyserupdater.common.http;
+
+import cn.lemwood.geyserupdater.common.api.UpdateClient;
+import cn.lemwood.geyserupdater.common.platform.PlatformAdapter;
+import cn.lemwood.geyserupdater.common.util.AtomicFiles;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent cache of API responses for conditional requests.
+ * <p>
+ * For every request key the ETag / Last-Modified validators are stored together with the
+ * {@link UpdateClient.UpdateVersion} parsed from that response. The next request sends
+ * {@code If-None-Match} / {@code If-Modified-Since}, and a {@code 304 Not Modified} answer
+ * is resolved from the cache without downloading or parsing anything.
+ */
+public class MetadataCache {
+    private static final int FORMAT_VERSION = 1;
+
+    private final PlatformAdapter platform;
+    private final Path cacheFile;
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private volatile Map<String, Entry> entries;
+    private volatile boolean dirty;
+
+    public MetadataCache(PlatformAdapter platform, Path cacheFile) {
+        this.platform = platform;
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Adds the stored validators for {@code key} to the request, if there are any.
+     */
+    public void applyValidators(String key, HttpRequest.Builder request) {
+        Entry entry = entries().get(key);
+        if (entry == null || entry.version == null) return;
+        if (entry.etag != null) {
+            request.header("If-None-Match", entry.etag);
+        }
+        if (entry.lastModified != null) {
+            request.header("If-Modified-Since", entry.lastModified);
+        }
+    }
+
+    /**
+     * @return true if the response is a 304 that can be answered from this cache
+     */
+    public boolean isNotModified(String key, HttpResponse<?> response) {
+        if (response.statusCode() != 304) return false;
+        Entry entry = entries().get(key);
+        return entry != null && entry.version != null;
+    }
+
+    /**
+     * Returns the version stored for {@code key}, or null if nothing is cached.
+     */
+    public UpdateClient.UpdateVersion getVersion(String key) {
+        Entry entry = entries().get(key);
+        return entry == null ? null : entry.version;
+    }
+
+    /**
+     * Stores the result parsed from a 200 response along with its validators.
+     * Responses without any validator are not worth caching and are skipped.
+     */
+    public void store(String key, HttpHeaders headers, UpdateClient.UpdateVersion version) {
+        String etag = headers.firstValue("ETag").orElse(null);
+        String lastModified = headers.firstValue("Last-Modified").orElse(null);
+        if (version == null || (etag == null && lastModified == null)) {
+            if (entries().remove(key) != null) dirty = true;
+            return;
+        }
+        Entry entry = new Entry();
+        entry.etag = etag;
+        entry.lastModified = lastModified;
+        entry.version = version;
+        entries().put(key, entry);
+        dirty = true;
+    }
+
+    /**
+     * Writes the cache to disk if anything changed since the last save.
+     */
+    public synchronized void save() {
+        if (!dirty || entries == null) return;
+        CacheFile data = new CacheFile();
+        data.version = FORMAT_VERSION;
+        data.entries = entries;
+        try {
+            AtomicFiles.writeString(cacheFile, gson.toJson(data));
+            dirty = false;
+        } catch (IOException e) {
+            platform.warn("Failed to save HTTP metadata cache: " + e.getMessage());
+        }
+    }
+
+    private Map<String, Entry> entries() {
+        Map<String, Entry> map = entries;
+        if (map == null) {
+            synchronized (this) {
+                map = entries;
+                if (map == null) {
+                    map = load();
+                    entries = map;
+                }
+            }
+        }
+        return map;
+    }
+
+    private Map<String, Entry> load() {
+        Map<String, Entry> map = new ConcurrentHashMap<>();
+        try {
+            CacheFile data = gson.fromJson(Files.readString(cacheFile, StandardCharsets.UTF_8), CacheFile.class);
+            if (data != null && data.version == FORMAT_VERSION && data.entries != null) {
+                data.entries.forEach((key, entry) -> {
+                    if (entry != null && entry.version != null) map.put(key, entry);
+                });
+            }
+        } catch (NoSuchFileException ignored) {
+        } catch (IOException | JsonParseException e) {
+            platform.warn("HTTP metadata cache is unreadable, starting fresh: " + e.getMessage());
+            dirty = true;
+        }
+        return map;
+    }
+
+    private static class CacheFile {
+        int version;
+        Map<String, Entry> entries;
+    }
+
+    private static class Entry {
+        String etag;
+        String lastModified;
+        UpdateClient.UpdateVersion version;
+    }
+}
@@ -0,0 +1,206 @@
+package cn.lemwood.geyserupdater.common.http;
+
+import cn.lemwood.geyserupdater.common.config.ConfigManager;
+import cn.lemwood.geyserupdater.common.platform.PlatformAdapter;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-side budget for an API that reports its limits through {@code X-Ratelimit-Limit},
+ * {@code X-Ratelimit-Remaining} and {@code X-Ratelimit-Reset} headers.
+ * <p>
+ * Every request takes one token before it is sent. When the budget is used up, the request
+ * is delayed until the window resets rather than being sent only to get a 429. The counts
+ * reported by the server replace the local estimate after each response, and a 429 blocks
+ * all requests for the {@code Retry-After} period.
+ * <p>
+ * The state can be kept in a shared file that is locked for every update. All server
+ * processes on one host then draw from the single per-IP budget the API actually enforces.
+ */
+public class RateLimitGovernor {
+    private static final int FORMAT_VERSION = 1;
+    // Used when the server has not told us the window length yet
+    private static final long DEFAULT_WINDOW_MILLIS = 60_000;
+
+    private final PlatformAdapter platform;
+    private final ConfigManager config;
+    private final String name;
+    private final Gson gson = new Gson();
+    private State memoryState = new State();
+
+    /**
+     * @param name identifies the API in the shared file name and in log messages
+     */
+    public RateLimitGovernor(PlatformAdapter platform, ConfigManager config, String name) {
+        this.platform = platform;
+        this.config = config;
+        this.name = name;
+    }
+
+    /**
+     * Takes a token, completing once the request may be sent. Fails with
+     * {@link RateLimitedException} if that would mean waiting longer than configured.
+     */
+    public CompletableFuture<Void> acquire() {
+        long wait = update(state -> {
+            long now = System.currentTimeMillis();
+            if (now < state.blockedUntil) return state.blockedUntil - now;
+            if (state.resetAt > 0 && state.resetAt <= now) {
+                // The window has passed, so the full budget is available again
+                state.remaining = state.limit;
+                state.resetAt = state.limit > 0 ? now + DEFAULT_WINDOW_MILLIS : 0;
+            }
+            if (state.remaining == 0 && state.resetAt > now) return state.resetAt - now;
+            if (state.remaining > 0) state.remaining--;
+            return 0L;
+        });
+        if (wait <= 0) return CompletableFuture.completedFuture(null);
+
+        long maxWait = config.getRateLimitMaxWaitSeconds() * 1000L;
+        if (wait > maxWait) {
+            return CompletableFuture.failedFuture(new RateLimitedException(name, wait));
+        }
+        if (config.isDebug()) {
+            platform.info(name + " rate limit reached, delaying request by " + wait + " ms");
+        }
+        // Take a token again afterwards, another process may have used the new window first
+        return CompletableFuture.runAsync(() -> {
+        }, CompletableFuture.delayedExecutor(wait, TimeUnit.MILLISECONDS)).thenCompose(v -> acquire());
+    }
+
+    /**
+     * Records the limits reported with a response.
+     */
+    public void onResponse(HttpHeaders headers) {
+        long limit = headers.firstValueAsLong("X-Ratelimit-Limit").orElse(-1);
+        long remaining = headers.firstValueAsLong("X-Ratelimit-Remaining").orElse(-1);
+        long reset = headers.firstValueAsLong("X-Ratelimit-Reset").orElse(-1);
+        if (remaining < 0) return;
+        update(state -> {
+            long now = System.currentTimeMillis();
+            // Requests reserved by other processes may not have reached the server yet,
+            // so within the same window keep whichever count is lower
+            boolean sameWindow = state.resetAt > now && state.remaining >= 0;
+            state.remaining = sameWindow ? Math.min(state.remaining, remaining) : remaining;
+            if (limit > 0) state.limit = limit;
+            state.resetAt = now + (reset >= 0 ? reset * 1000 : DEFAULT_WINDOW_MILLIS);
+            return 0L;
+        });
+    }
+
+    /**
+     * Blocks all requests after a 429, for as long as the server asked.
+     */
+    public void onTooManyRequests(HttpHeaders headers) {
+        long wait = retryAfterMillis(headers);
+        update(state -> {
+            long until = System.currentTimeMillis() + wait;
+            state.blockedUntil = Math.max(state.blockedUntil, until);
+            state.remaining = 0;
+            state.resetAt = Math.max(state.resetAt, until);
+            return 0L;
+        });
+        if (config.isDebug()) {
+            platform.info(name + " answered 429, pausing requests for " + wait + " ms");
+        }
+    }
+
+    /**
+     * @return how long a 429 response asked us to wait, from {@code Retry-After} or the reset header
+     */
+    public static long retryAfterMillis(HttpHeaders headers) {
+        String retryAfter = headers.firstValue("Retry-After").orElse(null);
+        if (retryAfter != null) {
+            try {
+                return Math.max(0, Long.parseLong(retryAfter.trim())) * 1000;
+            } catch (NumberFormatException e) {
+                try {
+                    ZonedDateTime date = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                    return Math.max(0, date.toInstant().toEpochMilli() - System.currentTimeMillis());
+                } catch (DateTimeParseException ignored) {
+                }
+            }
+        }
+        long reset = headers.firstValueAsLong("X-Ratelimit-Reset").orElse(-1);
+        return reset >= 0 ? reset * 1000 : DEFAULT_WINDOW_MILLIS;
+    }
+
+    private interface Update {
+        long apply(State state);
+    }
+
+    /**
+     * Applies {@code update} to the current state, holding the shared file lock if there is one.
+     */
+    private synchronized long update(Update update) {
+        Path file = config.isRateLimitShared() ? config.getRateLimitSharedFile(name) : null;
+        if (file != null) {
+            try {
+                return updateShared(file, update);
+            } catch (IOException | OverlappingFileLockException e) {
+                if (config.isDebug()) {
+                    platform.warn("Cannot use shared rate limit file " + file + ", falling back to local state: " + e);
+                }
+            }
+        }
+        return update.apply(memoryState);
+    }
+
+    private long updateShared(Path file, Update update) throws IOException {
+        Files.createDirectories(file.getParent());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Blocks until no other process holds the file; released when the channel is closed
+            channel.lock();
+            State state = read(channel);
+            long result = update.apply(state);
+            byte[] json = gson.toJson(state).getBytes(StandardCharsets.UTF_8);
+            channel.truncate(0);
+            ByteBuffer buffer = ByteBuffer.wrap(json);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, buffer.position());
+            }
+            // Keep the local copy in sync so a later fallback starts from a sensible state
+            memoryState = state;
+            return result;
+        }
+    }
+
+    private State read(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size == 0 || size > 64 * 1024) return new State();
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) break;
+        }
+        try {
+            State state = gson.fromJson(new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8), State.class);
+            return state != null && state.version == FORMAT_VERSION ? state : new State();
+        } catch (JsonParseException e) {
+            return new State();
+        }
+    }
+
+    private static class State {
+        int version = FORMAT_VERSION;
+        long limit = -1;
+        long remaining = -1;
+        long resetAt;
+        long blockedUntil;
+    }
+}
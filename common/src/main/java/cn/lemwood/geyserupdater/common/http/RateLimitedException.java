@@ -0,0 +1,22 @@
+package cn.lemwood.geyserupdater.common.http;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of sending a request when the API's rate limit would require waiting
+ * longer than the configured maximum.
+ */
+public class RateLimitedException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final long waitMillis;
+
+    public RateLimitedException(String api, long waitMillis) {
+        super(api + " rate limit exhausted, next request allowed in " + (waitMillis + 999) / 1000 + " s");
+        this.waitMillis = waitMillis;
+    }
+
+    public long getWaitMillis() {
+        return waitMillis;
+    }
+}
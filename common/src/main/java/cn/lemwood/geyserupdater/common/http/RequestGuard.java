@@ -0,0 +1,232 @@
+package cn.lemwood.geyserupdater.common.http;
+
+import cn.lemwood.geyserupdater.common.config.ConfigManager;
+import cn.lemwood.geyserupdater.common.platform.PlatformAdapter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Retries, timeouts and circuit breakers for requests to update endpoints.
+ * <p>
+ * Transient failures (I/O errors, timeouts, 5xx answers) are retried a bounded number of
+ * times with exponential backoff and jitter. Each host has a {@link CircuitBreaker}: once a
+ * host keeps failing, requests to it fail immediately with {@link CircuitOpenException}
+ * instead of queueing up behind a dead endpoint. A request that exceeds its timeout is
+ * cancelled, which aborts the exchange and releases its connection.
+ * <p>
+ * Only idempotent requests may go through here. Every request this plugin sends is, including
+ * Modrinth's POST lookups by hash.
+ */
+public class RequestGuard {
+    private final PlatformAdapter platform;
+    private final ConfigManager config;
+    private final HttpTransport transport;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    public RequestGuard(PlatformAdapter platform, ConfigManager config, HttpTransport transport) {
+        this.platform = platform;
+        this.config = config;
+        this.transport = transport;
+    }
+
+    public <T> CompletableFuture<HttpResponse<T>> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        return send(request, handler, () -> CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * Sends {@code request}, retrying transient failures. A 5xx answer is retried as well;
+     * if it persists, the last one is returned for the caller to handle like any other status.
+     * @param permit runs before every attempt, e.g. to take a rate limit token
+     */
+    public <T> CompletableFuture<HttpResponse<T>> send(HttpRequest request, HttpResponse.BodyHandler<T> handler,
+                                                       Supplier<CompletableFuture<Void>> permit) {
+        Duration timeout = Duration.ofSeconds(config.getCallTimeoutSeconds());
+        return call(request.uri().getHost(),
+                () -> permit.get().thenCompose(v -> withTimeout(transport.sendAsync(request, handler), timeout)),
+                RequestGuard::isTransient,
+                response -> isRetryableStatus(response.statusCode()));
+    }
+
+    /**
+     * Runs {@code action}, which talks to {@code host}, retrying it while it fails in a way
+     * {@code retryable} accepts.
+     */
+    public <T> CompletableFuture<T> call(String host, Supplier<CompletableFuture<T>> action,
+                                         Predicate<Throwable> retryable) {
+        return call(host, action, retryable, result -> false);
+    }
+
+    private <T> CompletableFuture<T> call(String host, Supplier<CompletableFuture<T>> action,
+                                          Predicate<Throwable> retryable, Predicate<T> failedResult) {
+        return attempt(host, action, retryable, failedResult, 1);
+    }
+
+    private <T> CompletableFuture<T> attempt(String host, Supplier<CompletableFuture<T>> action,
+                                             Predicate<Throwable> retryable, Predicate<T> failedResult, int attempt) {
+        CircuitBreaker breaker = breakerFor(host);
+        if (!breaker.tryAcquire()) {
+            return CompletableFuture.failedFuture(new CircuitOpenException(host, breaker.getRetryInMillis()));
+        }
+        CompletableFuture<T> started;
+        try {
+            started = action.get();
+        } catch (RuntimeException e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+        return started.handle((result, error) -> {
+            Throwable cause = unwrap(error);
+            boolean failed = error != null ? retryable.test(cause) : failedResult.test(result);
+            if (!failed) {
+                if (error != null) {
+                    // Says nothing about the host, e.g. a rate limit or a 404
+                    breaker.release();
+                } else if (breaker.onSuccess()) {
+                    platform.info(config.getMessage("circuit-closed").replace("{host}", host));
+                }
+                return error != null ? CompletableFuture.<T>failedFuture(cause) : CompletableFuture.completedFuture(result);
+            }
+            if (breaker.onFailure()) {
+                platform.warn(config.getMessage("circuit-open")
+                        .replace("{host}", host)
+                        .replace("{seconds}", String.valueOf(config.getBreakerOpenSeconds())));
+            }
+            int maxAttempts = Math.max(1, config.getRetryMaxAttempts());
+            if (attempt >= maxAttempts || breaker.getState() == CircuitBreaker.State.OPEN) {
+                return error != null ? CompletableFuture.<T>failedFuture(cause) : CompletableFuture.completedFuture(result);
+            }
+            if (result != null) discard(result);
+            long delay = backoffMillis(attempt);
+            if (config.isDebug()) {
+                String reason = error != null ? String.valueOf(cause) : "status " + ((HttpResponse<?>) result).statusCode();
+                platform.info("Request to " + host + " failed (" + reason + "), retrying in " + delay + " ms ("
+                        + (attempt + 1) + "/" + maxAttempts + ")");
+            }
+            return CompletableFuture.supplyAsync(() -> null, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS))
+                    .thenCompose(v -> attempt(host, action, retryable, failedResult, attempt + 1));
+        }).thenCompose(future -> future);
+    }
+
+    /**
+     * Exponential backoff with equal jitter: half the delay is fixed, the other half random,
+     * so retries from many servers don't arrive in lockstep.
+     */
+    private long backoffMillis(int attempt) {
+        long initial = Math.max(1, config.getRetryDelayMillis());
+        long max = Math.max(initial, config.getRetryMaxDelayMillis());
+        long delay = Math.min(max, initial << Math.min(attempt - 1, 20));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * Forgets every breaker, so the next request to each host builds one with the current thresholds.
+     */
+    public void resetBreakers() {
+        breakers.clear();
+    }
+
+    private CircuitBreaker breakerFor(String host) {
+        return breakers.computeIfAbsent(host, h -> new CircuitBreaker(config.getBreakerFailureThreshold(),
+                config.getBreakerOpenSeconds() * 1000L));
+    }
+
+    /**
+     * @return false while the breaker for {@code host} is open and not yet due for a trial request
+     */
+    public boolean isAvailable(String host) {
+        CircuitBreaker breaker = breakers.get(host);
+        return breaker == null || breaker.getState() != CircuitBreaker.State.OPEN || breaker.getRetryInMillis() == 0;
+    }
+
+    /**
+     * @return the breaker state of every host contacted so far, sorted by host
+     */
+    public Map<String, CircuitBreaker.State> getBreakerStates() {
+        Map<String, CircuitBreaker.State> states = new TreeMap<>();
+        breakers.forEach((host, breaker) -> states.put(host, breaker.getState()));
+        return states;
+    }
+
+    /**
+     * Cancels {@code exchange} if it hasn't completed within {@code timeout}, which aborts the
+     * request. A streamed body that is still being read at that point is closed as well.
+     * @return a future failing with {@link HttpTimeoutException} on timeout
+     */
+    public static <T> CompletableFuture<T> withTimeout(CompletableFuture<T> exchange, Duration timeout) {
+        return withTimeout(exchange, timeout, () -> {
+        });
+    }
+
+    /**
+     * Like {@link #withTimeout(CompletableFuture, Duration)}, but runs {@code onTimeout} first when
+     * the timeout fires, e.g. to stop a body subscriber that the cancelled exchange may still feed.
+     */
+    public static <T> CompletableFuture<T> withTimeout(CompletableFuture<T> exchange, Duration timeout,
+                                                       Runnable onTimeout) {
+        // completeOnTimeout unschedules its timer once the future completes, so a finished
+        // exchange doesn't leave a task behind for the rest of the timeout
+        CompletableFuture<Void> timer = new CompletableFuture<Void>()
+                .completeOnTimeout(null, timeout.toMillis(), TimeUnit.MILLISECONDS);
+        exchange.whenComplete((result, error) -> timer.cancel(false));
+        timer.thenRun(() -> {
+            onTimeout.run();
+            if (!exchange.cancel(true) && !exchange.isCompletedExceptionally()) {
+                discard(exchange.join());
+            }
+        });
+        return exchange.handle((result, error) -> {
+            if (error == null) return result;
+            Throwable cause = unwrap(error);
+            if (cause instanceof CancellationException) {
+                throw new CompletionException(new HttpTimeoutException("No response within " + timeout.toSeconds() + " s"));
+            }
+            throw new CompletionException(cause);
+        });
+    }
+
+    /**
+     * @return true for failures that may go away on their own: I/O errors and timeouts
+     */
+    public static boolean isTransient(Throwable error) {
+        if (error instanceof RateLimitedException || error instanceof CircuitOpenException) return false;
+        return error instanceof IOException || error instanceof TimeoutException;
+    }
+
+    /**
+     * @return true for statuses that mean the server is struggling rather than refusing the request
+     */
+    public static boolean isRetryableStatus(int status) {
+        return status == 408 || status == 500 || status == 502 || status == 503 || status == 504;
+    }
+
+    static void discard(Object result) {
+        if (result instanceof HttpResponse<?> response && response.body() instanceof InputStream in) {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
@@ -0,0 +1,225 @@
+package cn.lemwood.geyserupdater.common.index;
+
+import cn.lemwood.geyserupdater.common.config.ConfigManager;
+import cn.lemwood.geyserupdater.common.platform.PlatformAdapter;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * In-memory index of the jars in the plugin and mod folders.
+ * <p>
+ * Each folder is listed once, the first time it is asked about, and then kept current from
+ * {@link WatchService} events, so finding a project's jar no longer touches the disk. That
+ * matters on network filesystems, where a directory listing can take tens of milliseconds.
+ * Jars added, replaced or removed by hand show up as events. When a project has more than
+ * one jar, a warning names them all and the most recently modified one is used.
+ * <p>
+ * If the filesystem cannot be watched, every lookup lists the folder again.
+ */
+public class DirectoryIndex implements AutoCloseable {
+    private final PlatformAdapter platform;
+    private final ConfigManager config;
+    private final Map<Path, Folder> folders = new ConcurrentHashMap<>();
+    private final Map<WatchKey, Folder> watched = new ConcurrentHashMap<>();
+    private WatchService watcher;
+    private Thread watchThread;
+    private boolean watchUnavailable;
+
+    public DirectoryIndex(PlatformAdapter platform, ConfigManager config) {
+        this.platform = platform;
+        this.config = config;
+    }
+
+    /**
+     * @return the jar of {@code projectId} in {@code dir}, or null if there is none
+     */
+    public Path find(String projectId, Path dir) {
+        Path key = dir.toAbsolutePath().normalize();
+        Folder folder = folders.get(key);
+        if (folder == null) {
+            synchronized (this) {
+                folder = folders.get(key);
+                if (folder == null) {
+                    folder = new Folder(key);
+                    // Watch before listing so nothing that happens in between is missed
+                    boolean watching = watch(folder);
+                    folder.rescan();
+                    if (!watching) {
+                        // Nothing would keep it current, so use this listing once
+                        List<Path> candidates = folder.candidates(projectId);
+                        return candidates.isEmpty() ? null : candidates.get(0);
+                    }
+                    folders.put(key, folder);
+                }
+            }
+        }
+        List<Path> candidates = folder.candidates(projectId);
+        return candidates.isEmpty() ? null : candidates.get(0);
+    }
+
+    private synchronized boolean watch(Folder folder) {
+        if (watchUnavailable || !Files.isDirectory(folder.dir)) return false;
+        try {
+            if (watcher == null) {
+                watcher = FileSystems.getDefault().newWatchService();
+                watchThread = new Thread(this::processEvents, "GeyserUpdater-DirectoryIndex");
+                watchThread.setDaemon(true);
+                watchThread.start();
+            }
+            WatchKey key = folder.dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watched.put(key, folder);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            watchUnavailable = true;
+            if (config.isDebug()) {
+                platform.info("Cannot watch " + folder.dir + ", plugin folders will be listed on every check: " + e.getMessage());
+            }
+            return false;
+        }
+    }
+
+    private void processEvents() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                Folder folder = watched.get(key);
+                if (folder != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            folder.rescan();
+                        } else if (event.context() instanceof Path name && isJar(name.getFileName().toString())) {
+                            folder.update(folder.dir.resolve(name));
+                        }
+                    }
+                }
+                if (!key.reset()) {
+                    // The folder itself is gone; the next lookup lists it afresh
+                    watched.remove(key);
+                    if (folder != null) folders.remove(folder.dir, folder);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (watcher == null) return;
+        try {
+            watcher.close();
+        } catch (IOException ignored) {
+        }
+        watchThread.interrupt();
+        watcher = null;
+        watched.clear();
+        folders.clear();
+    }
+
+    /**
+     * @return true if {@code fileName} looks like a jar of {@code projectId}
+     */
+    public static boolean matches(String projectId, String fileName) {
+        if (!isJar(fileName)) return false;
+        return switch (projectId) {
+            // "Geyser" is also the start of "GeyserExtras"
+            case "geyser" -> startsWithIgnoreCase(fileName, "geyser") && !startsWithIgnoreCase(fileName, "geyserextras");
+            case "floodgate" -> startsWithIgnoreCase(fileName, "floodgate");
+            case "geyserextras" -> startsWithIgnoreCase(fileName, "geyserextras");
+            default -> startsWithIgnoreCase(fileName, projectId);
+        };
+    }
+
+    private static boolean isJar(String fileName) {
+        return fileName.regionMatches(true, fileName.length() - 4, ".jar", 0, 4);
+    }
+
+    private static boolean startsWithIgnoreCase(String value, String prefix) {
+        return value.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    private static FileTime modified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private class Folder {
+        private final Path dir;
+        private final Set<Path> jars = new HashSet<>();
+        private final Map<String, List<Path>> byProject = new HashMap<>();
+
+        Folder(Path dir) {
+            this.dir = dir;
+        }
+
+        synchronized void rescan() {
+            jars.clear();
+            byProject.clear();
+            try (Stream<Path> entries = Files.list(dir)) {
+                entries.filter(p -> isJar(p.getFileName().toString())).forEach(jars::add);
+            } catch (IOException e) {
+                if (config.isDebug()) {
+                    platform.info("Failed to list " + dir + ": " + e.getMessage());
+                }
+            }
+        }
+
+        synchronized void update(Path jar) {
+            if (Files.exists(jar)) {
+                jars.add(jar);
+            } else if (!jars.remove(jar)) {
+                return;
+            }
+            // A replaced jar may change which candidate is the newest, so recompute lazily
+            byProject.keySet().removeIf(projectId -> matches(projectId, jar.getFileName().toString()));
+            if (config.isDebug()) {
+                platform.info("Plugin folder changed: " + jar);
+            }
+        }
+
+        /**
+         * @return the jars of {@code projectId}, most recently modified first
+         */
+        synchronized List<Path> candidates(String projectId) {
+            List<Path> cached = byProject.get(projectId);
+            if (cached != null) return cached;
+            List<Path> found = new ArrayList<>();
+            for (Path jar : jars) {
+                if (matches(projectId, jar.getFileName().toString())) found.add(jar);
+            }
+            if (found.size() > 1) {
+                found.sort(Comparator.comparing(DirectoryIndex::modified).reversed()
+                        .thenComparing(Comparator.naturalOrder()));
+                platform.warn(config.getMessage("duplicate-jars")
+                        .replace("{project}", projectId)
+                        .replace("{files}", found.stream().map(p -> p.getFileName().toString()).collect(Collectors.joining(", ")))
+                        .replace("{file}", found.get(0).getFileName().toString()));
+            }
+            List<Path> result = List.copyOf(found);
+            byProject.put(projectId, result);
+            return result;
+        }
+    }
+}
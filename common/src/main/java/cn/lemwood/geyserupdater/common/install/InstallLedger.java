@@ -0,0 +1,171 @@
+package cn.lemwood.geyserupdater.common.install;
+
+import cn.lemwood.geyserupdater.common.api.UpdateClient;
+import cn.lemwood.geyserupdater.common.hash.HashAlgorithm;
+import cn.lemwood.geyserupdater.common.platform.PlatformAdapter;
+import cn.lemwood.geyserupdater.common.util.AtomicFiles;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Durable record of what is installed for each project: version, build, checksum, file,
+ * size, mtime, the source it came from and when it was recorded.
+ * <p>
+ * While the recorded file still has the recorded size and mtime, the ledger is trusted instead
+ * of the plugin folder: a check needs one {@code stat} per project rather than a directory
+ * listing, and if the remote version has the recorded checksum or build nothing is hashed at
+ * all. An entry whose file was replaced or removed is dropped and rebuilt by the next full check.
+ */
+public class InstallLedger {
+    private static final int FORMAT_VERSION = 1;
+
+    private final PlatformAdapter platform;
+    private final Path ledgerFile;
+    private final Gson gson = new Gson();
+    private volatile Map<String, Entry> entries;
+
+    public InstallLedger(PlatformAdapter platform, Path ledgerFile) {
+        this.platform = platform;
+        this.ledgerFile = ledgerFile;
+    }
+
+    /**
+     * @return the entry for {@code project} if its file is unchanged on disk, otherwise null.
+     *         An entry that no longer matches the disk is forgotten.
+     */
+    public Entry current(String project) {
+        Entry entry = entries().get(project);
+        if (entry == null) return null;
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(Path.of(entry.file), BasicFileAttributes.class);
+            if (attrs.size() == entry.size && attrs.lastModifiedTime().toMillis() == entry.mtime) return entry;
+        } catch (IOException ignored) {
+        }
+        forget(project);
+        return null;
+    }
+
+    /**
+     * @return true if the unchanged installed file is exactly {@code remote}, by checksum or build
+     */
+    public boolean isCurrent(String project, UpdateClient.UpdateVersion remote) {
+        Entry entry = current(project);
+        if (entry == null) return false;
+        if (remote.build >= 0 && remote.build == entry.build) return true;
+        for (HashAlgorithm algorithm : HashAlgorithm.values()) {
+            String recorded = entry.hashes.get(algorithm.getKey());
+            String advertised = remote.getHash(algorithm);
+            if (recorded != null && recorded.equalsIgnoreCase(advertised)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records that {@code file} is {@code version} of {@code project}, verified with {@code hash}.
+     */
+    public synchronized void record(String project, UpdateClient.UpdateVersion version, Path file,
+                                    HashAlgorithm algorithm, String hash) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            Entry entry = new Entry();
+            entry.version = version.versionNumber;
+            entry.build = version.build;
+            entry.hashes = new HashMap<>();
+            entry.hashes.put(algorithm.getKey(), hash.toLowerCase());
+            // Keep every checksum the source advertised, so any of them can confirm the file later
+            for (HashAlgorithm other : HashAlgorithm.values()) {
+                if (version.getHash(other) != null) entry.hashes.putIfAbsent(other.getKey(), version.getHash(other).toLowerCase());
+            }
+            entry.file = file.toAbsolutePath().normalize().toString();
+            entry.size = attrs.size();
+            entry.mtime = attrs.lastModifiedTime().toMillis();
+            entry.source = version.source;
+            entry.recordedAt = System.currentTimeMillis();
+            entries().put(project, entry);
+            save();
+        } catch (IOException e) {
+            // Only costs a full check next time
+            platform.warn("Failed to record installed " + project + ": " + e.getMessage());
+        }
+    }
+
+    private synchronized void forget(String project) {
+        if (entries().remove(project) != null) save();
+    }
+
+    private void save() {
+        LedgerFile data = new LedgerFile();
+        data.version = FORMAT_VERSION;
+        data.projects = entries();
+        try {
+            AtomicFiles.writeString(ledgerFile, gson.toJson(data));
+        } catch (IOException e) {
+            platform.warn("Failed to save install ledger: " + e.getMessage());
+        }
+    }
+
+    private Map<String, Entry> entries() {
+        Map<String, Entry> map = entries;
+        if (map == null) {
+            synchronized (this) {
+                map = entries;
+                if (map == null) {
+                    map = load();
+                    entries = map;
+                }
+            }
+        }
+        return map;
+    }
+
+    private Map<String, Entry> load() {
+        Map<String, Entry> map = new ConcurrentHashMap<>();
+        try {
+            LedgerFile data = gson.fromJson(Files.readString(ledgerFile, StandardCharsets.UTF_8), LedgerFile.class);
+            if (data != null && data.version == FORMAT_VERSION && data.projects != null) {
+                data.projects.forEach((project, entry) -> {
+                    if (entry != null && entry.file != null && entry.hashes != null) map.put(project, entry);
+                });
+            }
+        } catch (NoSuchFileException ignored) {
+        } catch (IOException | JsonParseException e) {
+            // Everything in it can be rebuilt by hashing the installed jars again
+            platform.warn("Install ledger is unreadable, rebuilding: " + e.getMessage());
+        }
+        return map;
+    }
+
+    private static class LedgerFile {
+        int version;
+        Map<String, Entry> projects;
+    }
+
+    public static class Entry {
+        String version;
+        int build = -1;
+        Map<String, String> hashes;
+        String file;
+        long size;
+        long mtime;
+        String source;
+        long recordedAt;
+
+        public String getVersion() {
+            return version;
+        }
+
+        public Path getFile() {
+            return Path.of(file);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package cn.lemwood.geyserupdater.common.jar;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the version of a plugin, mod or extension straight from its jar.
+ * <p>
+ * Instead of opening the archive as a whole, the end-of-central-directory record is located
+ * from the end of the file, the central directory is scanned for the few descriptor files
+ * that carry a version, and only those entries are read and inflated. That is a small
+ * fraction of the jar, compared with hashing all of it.
+ * <p>
+ * Results are cached by path, size and mtime.
+ */
+public final class JarMetadataReader {
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int MAX_COMMENT = 0xFFFF;
+    private static final long MAX_CENTRAL_DIRECTORY = 64L << 20;
+    private static final int MAX_ENTRY_SIZE = 1 << 20;
+
+    /** Entries that may carry a version, in order of preference. */
+    private static final List<String> DESCRIPTORS = List.of(
+            "extension.yml", "plugin.yml", "velocity-plugin.json", "fabric.mod.json",
+            "META-INF/MANIFEST.MF", "git.properties");
+    private static final Pattern YAML_VERSION = Pattern.compile("(?m)^version:\\s*['\"]?([^'\"#\\r\\n]+?)['\"]?\\s*(#.*)?$");
+    private static final Pattern BUILD_SUFFIX = Pattern.compile("-b(\\d+)$");
+
+    private static final Map<Path, Cached> CACHE = new ConcurrentHashMap<>();
+
+    private JarMetadataReader() {
+    }
+
+    /**
+     * @param version the declared version, or null if the jar declares none
+     * @param build the Geyser build number, or -1 if unknown
+     */
+    public record JarMetadata(String version, int build) {
+    }
+
+    /**
+     * @return the metadata of {@code jar}, empty if it isn't a zip, or null if it can't be read
+     */
+    public static JarMetadata read(Path jar) {
+        Path key = jar.toAbsolutePath().normalize();
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(key, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+        Cached cached = CACHE.get(key);
+        if (cached != null && cached.size == attrs.size() && cached.mtime == attrs.lastModifiedTime().toMillis()) {
+            return cached.metadata;
+        }
+        JarMetadata metadata;
+        try {
+            metadata = parse(readDescriptors(key));
+        } catch (IOException | DataFormatException | RuntimeException e) {
+            metadata = null;
+        }
+        CACHE.put(key, new Cached(attrs.size(), attrs.lastModifiedTime().toMillis(), metadata));
+        return metadata;
+    }
+
+    private static JarMetadata parse(Map<String, String> entries) {
+        String version = null;
+        int build = -1;
+        for (String name : DESCRIPTORS) {
+            String content = entries.get(name);
+            if (content == null) continue;
+            String found = switch (name) {
+                case "velocity-plugin.json", "fabric.mod.json" -> jsonVersion(content);
+                case "META-INF/MANIFEST.MF" -> {
+                    Map<String, String> attributes = manifest(content);
+                    yield attributes.getOrDefault("Implementation-Version", attributes.get("Bundle-Version"));
+                }
+                case "git.properties" -> properties(content).get("git.build.version");
+                default -> yamlVersion(content);
+            };
+            // A placeholder left by a build that didn't filter its resources isn't a version
+            if (found != null && !found.isBlank() && !found.contains("${")) {
+                version = found.trim();
+                break;
+            }
+        }
+        // Geyser and Floodgate record their build number in git.properties
+        String gitProperties = entries.get("git.properties");
+        if (gitProperties != null) {
+            build = parseBuild(properties(gitProperties).get("git.build.number"));
+        }
+        if (build < 0 && version != null) {
+            Matcher matcher = BUILD_SUFFIX.matcher(version);
+            if (matcher.find()) build = parseBuild(matcher.group(1));
+        }
+        return new JarMetadata(version, build);
+    }
+
+    private static Map<String, String> readDescriptors(Path jar) throws IOException, DataFormatException {
+        Map<String, String> result = new HashMap<>();
+        try (FileChannel channel = FileChannel.open(jar, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < EOCD_SIZE) return result;
+            int tailLength = (int) Math.min(size, EOCD_SIZE + MAX_COMMENT);
+            ByteBuffer tail = readAt(channel, size - tailLength, tailLength);
+            int eocd = -1;
+            for (int i = tailLength - EOCD_SIZE; i >= 0; i--) {
+                if (tail.getInt(i) == EOCD_SIGNATURE) {
+                    eocd = i;
+                    break;
+                }
+            }
+            if (eocd < 0) return result;
+
+            long directorySize = Integer.toUnsignedLong(tail.getInt(eocd + 12));
+            long directoryOffset = Integer.toUnsignedLong(tail.getInt(eocd + 16));
+            if ((directoryOffset == 0xFFFFFFFFL || directorySize == 0xFFFFFFFFL) && eocd >= 20
+                    && tail.getInt(eocd - 20) == ZIP64_LOCATOR_SIGNATURE) {
+                ByteBuffer zip64 = readAt(channel, tail.getLong(eocd - 20 + 8), 56);
+                if (zip64.getInt(0) != ZIP64_EOCD_SIGNATURE) return result;
+                directorySize = zip64.getLong(40);
+                directoryOffset = zip64.getLong(48);
+            }
+            if (directorySize > MAX_CENTRAL_DIRECTORY || directoryOffset + directorySize > size) return result;
+
+            ByteBuffer directory = readAt(channel, directoryOffset, (int) directorySize);
+            int pos = 0;
+            while (pos + 46 <= directory.limit() && directory.getInt(pos) == CENTRAL_SIGNATURE) {
+                int method = Short.toUnsignedInt(directory.getShort(pos + 10));
+                long compressedSize = Integer.toUnsignedLong(directory.getInt(pos + 20));
+                long uncompressedSize = Integer.toUnsignedLong(directory.getInt(pos + 24));
+                int nameLength = Short.toUnsignedInt(directory.getShort(pos + 28));
+                int extraLength = Short.toUnsignedInt(directory.getShort(pos + 30));
+                int commentLength = Short.toUnsignedInt(directory.getShort(pos + 32));
+                long localOffset = Integer.toUnsignedLong(directory.getInt(pos + 42));
+                String name = new String(directory.array(), pos + 46, nameLength, StandardCharsets.UTF_8);
+                pos += 46 + nameLength + extraLength + commentLength;
+
+                if (!DESCRIPTORS.contains(name) || compressedSize > MAX_ENTRY_SIZE || uncompressedSize > MAX_ENTRY_SIZE) {
+                    continue;
+                }
+                ByteBuffer local = readAt(channel, localOffset, 30);
+                if (local.getInt(0) != LOCAL_SIGNATURE) continue;
+                long dataOffset = localOffset + 30 + Short.toUnsignedInt(local.getShort(26))
+                        + Short.toUnsignedInt(local.getShort(28));
+                byte[] data = readAt(channel, dataOffset, (int) compressedSize).array();
+                byte[] content = switch (method) {
+                    case 0 -> data;
+                    case 8 -> inflate(data, (int) uncompressedSize);
+                    default -> null;
+                };
+                if (content != null) result.put(name, new String(content, StandardCharsets.UTF_8));
+            }
+        }
+        return result;
+    }
+
+    private static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("Unexpected end of jar");
+        }
+        return buffer.flip();
+    }
+
+    private static byte[] inflate(byte[] data, int size) throws DataFormatException {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data);
+            byte[] out = new byte[size];
+            int read = 0;
+            while (read < size && !inflater.finished()) {
+                int n = inflater.inflate(out, read, size - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                read += n;
+            }
+            return read == size ? out : java.util.Arrays.copyOf(out, read);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static String yamlVersion(String content) {
+        Matcher matcher = YAML_VERSION.matcher(content);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private static String jsonVersion(String content) {
+        JsonElement root = JsonParser.parseString(content);
+        if (!root.isJsonObject()) return null;
+        JsonObject object = root.getAsJsonObject();
+        return object.has("version") && object.get("version").isJsonPrimitive() ? object.get("version").getAsString() : null;
+    }
+
+    private static Map<String, String> manifest(String content) {
+        Map<String, String> attributes = new HashMap<>();
+        String last = null;
+        for (String line : content.split("\r?\n")) {
+            if (line.startsWith(" ") && last != null) {
+                // Continuation of a wrapped 72-byte line
+                attributes.merge(last, line.substring(1), String::concat);
+                continue;
+            }
+            int colon = line.indexOf(": ");
+            if (colon > 0) {
+                last = line.substring(0, colon);
+                attributes.put(last, line.substring(colon + 2));
+            }
+        }
+        return attributes;
+    }
+
+    private static Map<String, String> properties(String content) {
+        Map<String, String> properties = new HashMap<>();
+        for (String line : content.split("\r?\n")) {
+            if (line.startsWith("#")) continue;
+            int eq = line.indexOf('=');
+            if (eq > 0) properties.put(line.substring(0, eq).trim(), line.substring(eq + 1).trim());
+        }
+        return properties;
+    }
+
+    private static int parseBuild(String value) {
+        if (value == null) return -1;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private record Cached(long size, long mtime, JarMetadata metadata) {
+    }
+}
@@ -0,0 +1,89 @@
+package cn.lemwood.geyserupdater.common.mirror;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bookkeeping for the size-bounded mirror cache: which entry points at which blob, how many
+ * entries share each blob, and how many bytes the blobs take, with entries kept in least
+ * recently served order. Only memory is touched here; the caller deletes the files it is
+ * told to.
+ */
+final class CacheIndex {
+    // Entry name to what it caches, least recently served first
+    private final LinkedHashMap<String, Cached> lru = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Integer> blobRefs = new HashMap<>();
+    private long bytes;
+
+    /**
+     * @param sha256 name of the blob holding the body
+     * @param size size of the blob in bytes
+     */
+    record Cached(String sha256, long size) {
+    }
+
+    /**
+     * Files that are no longer needed.
+     * @param entries names of the evicted entries
+     * @param blobs blobs that no entry refers to any more
+     */
+    record Removed(List<String> entries, List<String> blobs) {
+    }
+
+    synchronized void clear() {
+        lru.clear();
+        blobRefs.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Moves {@code name} to the most recently served end.
+     */
+    synchronized void touch(String name) {
+        lru.get(name);
+    }
+
+    synchronized boolean references(String sha256) {
+        return blobRefs.containsKey(sha256);
+    }
+
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    /**
+     * Records that entry {@code name} now caches {@code cached}, then evicts the least recently
+     * served entries until the blobs fit in {@code limit} bytes again. The entry just added
+     * stays even if it alone exceeds the limit.
+     */
+    synchronized Removed put(String name, Cached cached, long limit) {
+        List<String> entries = new ArrayList<>();
+        List<String> blobs = new ArrayList<>();
+        // Referenced before the previous blob is let go, so an unchanged body keeps its blob
+        if (blobRefs.merge(cached.sha256(), 1, Integer::sum) == 1) bytes += cached.size();
+        Cached previous = lru.put(name, cached);
+        if (previous != null) release(previous, blobs);
+
+        Iterator<Map.Entry<String, Cached>> eldest = lru.entrySet().iterator();
+        while (bytes > limit && eldest.hasNext()) {
+            Map.Entry<String, Cached> e = eldest.next();
+            if (e.getKey().equals(name)) continue;
+            eldest.remove();
+            entries.add(e.getKey());
+            release(e.getValue(), blobs);
+        }
+        return new Removed(entries, blobs);
+    }
+
+    private void release(Cached cached, List<String> blobs) {
+        Integer refs = blobRefs.computeIfPresent(cached.sha256(), (sha, count) -> count > 1 ? count - 1 : null);
+        if (refs == null) {
+            bytes -= cached.size();
+            blobs.add(cached.sha256());
+        }
+    }
+}
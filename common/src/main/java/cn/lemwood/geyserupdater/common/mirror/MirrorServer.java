@@ -0,0 +1,541 @@
+package cn.lemwood.geyserupdater.common.mirror;
+
+import cn.lemwood.geyserupdater.common.config.ConfigManager;
+import cn.lemwood.geyserupdater.common.hash.FileHasher;
+import cn.lemwood.geyserupdater.common.hash.HashAlgorithm;
+import cn.lemwood.geyserupdater.common.hash.Hex;
+import cn.lemwood.geyserupdater.common.http.HttpTransport;
+import cn.lemwood.geyserupdater.common.http.RateLimitGovernor;
+import cn.lemwood.geyserupdater.common.http.RateLimitedException;
+import cn.lemwood.geyserupdater.common.platform.PlatformAdapter;
+import cn.lemwood.geyserupdater.common.util.AtomicFiles;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Serves the Modrinth and Geyser APIs and their download hosts to other instances on the network.
+ * <p>
+ * Requests are answered from a local cache that is filled from upstream on first use, so a
+ * whole fleet causes one upstream request per resource. Metadata is revalidated upstream once
+ * it is older than the metadata TTL; Modrinth CDN files never change and are kept as they are.
+ * While upstream is unreachable, the last cached copy keeps being served.
+ * <p>
+ * Routes are {@code /modrinth/...} for the Modrinth API, {@code /geyser/...} for the Geyser
+ * downloads API and {@code /files/<host>/...} for artifacts on a known download host. Cached
+ * responses carry a strong ETag and support conditional and single-range requests, so the
+ * downloader can resume and split downloads from the mirror just as from upstream.
+ * <p>
+ * The cache is bounded: once it exceeds the configured size, the least recently served
+ * entries and the blobs no other entry shares are removed. The server has no authentication
+ * and by default only listens on loopback.
+ */
+public class MirrorServer {
+    private static final Map<String, String> API_ROUTES = Map.of(
+            "modrinth", "https://api.modrinth.com",
+            "geyser", "https://download.geysermc.org");
+    private static final Set<String> FILE_HOSTS = Set.of("cdn.modrinth.com", "download.geysermc.org");
+    private static final Set<String> IMMUTABLE_HOSTS = Set.of("cdn.modrinth.com");
+    private static final int THREADS = 8;
+    static final long[] UNSATISFIABLE = new long[0];
+
+    private final PlatformAdapter platform;
+    private final ConfigManager config;
+    private final HttpTransport transport;
+    private final RateLimitGovernor governor;
+    private final FileHasher hasher;
+    private final Path cacheDir;
+    private final Gson gson = new Gson();
+    private final Map<String, CompletableFuture<Resource>> inFlight = new ConcurrentHashMap<>();
+    private final CacheIndex index = new CacheIndex();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param governor budget for requests to the Modrinth API, shared with this instance's own client
+     */
+    public MirrorServer(PlatformAdapter platform, ConfigManager config, HttpTransport transport,
+                        RateLimitGovernor governor, FileHasher hasher, Path cacheDir) {
+        this.platform = platform;
+        this.config = config;
+        this.transport = transport;
+        this.governor = governor;
+        this.hasher = hasher;
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * Rewrites a download URL to go through the mirror at {@code mirrorUrl} if the mirror
+     * serves its host.
+     * @param mirrorUrl base URL of the mirror, or null to use upstream directly
+     */
+    public static String mirrored(String mirrorUrl, String url) {
+        if (mirrorUrl == null) return url;
+        URI uri = URI.create(url);
+        if (!"https".equals(uri.getScheme()) || !FILE_HOSTS.contains(uri.getHost())) return url;
+        return mirrorUrl + "/files/" + uri.getHost() + uri.getRawPath()
+                + (uri.getRawQuery() != null ? "?" + uri.getRawQuery() : "");
+    }
+
+    public synchronized void start() throws IOException {
+        if (server != null) return;
+        Files.createDirectories(cacheDir.resolve("blobs"));
+        Files.createDirectories(cacheDir.resolve("entries"));
+        indexCache();
+        HttpServer created = HttpServer.create(new InetSocketAddress(config.getMirrorBind(), config.getMirrorPort()), 0);
+        created.createContext("/", this::handle);
+        executor = Executors.newFixedThreadPool(THREADS, r -> {
+            Thread thread = new Thread(r, "GeyserUpdater-Mirror");
+            thread.setDaemon(true);
+            return thread;
+        });
+        created.setExecutor(executor);
+        created.start();
+        server = created;
+    }
+
+    public synchronized void stop() {
+        if (server == null) return;
+        server.stop(1);
+        executor.shutdownNow();
+        server = null;
+    }
+
+    public synchronized InetSocketAddress getAddress() {
+        return server != null ? server.getAddress() : null;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            URI upstream = upstreamOf(exchange.getRequestURI());
+            if (upstream == null) {
+                sendEmpty(exchange, 404);
+                return;
+            }
+            if (!method.equals("GET") && !method.equals("HEAD") && !method.equals("POST")) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD, POST");
+                sendEmpty(exchange, 405);
+                return;
+            }
+            // Modrinth answers lookups by hash through POST; the body is part of the cache key
+            byte[] body = method.equals("POST") ? exchange.getRequestBody().readAllBytes() : null;
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+
+            Resource resource;
+            try {
+                resource = resolve(upstream, body, contentType).join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof RateLimitedException limited) {
+                    exchange.getResponseHeaders().set("Retry-After", String.valueOf((limited.getWaitMillis() + 999) / 1000));
+                    sendEmpty(exchange, 429);
+                } else {
+                    if (config.isDebug()) {
+                        platform.warn("Mirror could not fetch " + upstream + ": " + cause);
+                    }
+                    sendEmpty(exchange, 502);
+                }
+                return;
+            }
+            serve(exchange, resource, method.equals("HEAD"));
+        } catch (IOException e) {
+            // Usually the client went away mid-response
+            if (config.isDebug()) {
+                platform.warn("Mirror request failed: " + e.getMessage());
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Maps a request path to the upstream URL it mirrors, or null if it isn't mirrored.
+     */
+    static URI upstreamOf(URI request) {
+        String path = request.getRawPath();
+        if (path == null || path.contains("/../") || path.endsWith("/..")) return null;
+        String query = request.getRawQuery() != null ? "?" + request.getRawQuery() : "";
+        String[] parts = path.split("/", 3);
+        if (parts.length < 3 || !parts[0].isEmpty()) return null;
+        if (parts[1].equals("files")) {
+            int slash = parts[2].indexOf('/');
+            if (slash <= 0) return null;
+            String host = parts[2].substring(0, slash);
+            if (!FILE_HOSTS.contains(host)) return null;
+            return URI.create("https://" + host + parts[2].substring(slash) + query);
+        }
+        String base = API_ROUTES.get(parts[1]);
+        return base != null ? URI.create(base + "/" + parts[2] + query) : null;
+    }
+
+    /**
+     * Returns the cached resource if it is still fresh, otherwise fetches it. Concurrent
+     * requests for the same resource share one upstream request.
+     */
+    private CompletableFuture<Resource> resolve(URI upstream, byte[] body, String contentType) {
+        String key = body == null ? "GET " + upstream : "POST " + upstream + "#" + sha256(body);
+        Entry cached = loadEntry(key);
+        if (cached != null) markServed(key);
+        if (cached != null && isFresh(cached, upstream)) {
+            return CompletableFuture.completedFuture(cached.toResource(blobPath(cached.sha256)));
+        }
+
+        CompletableFuture<Resource> promise = new CompletableFuture<>();
+        CompletableFuture<Resource> existing = inFlight.putIfAbsent(key, promise);
+        if (existing != null) return existing;
+        fetch(key, upstream, body, contentType, cached).whenComplete((resource, error) -> {
+            inFlight.remove(key, promise);
+            if (error != null) promise.completeExceptionally(error);
+            else promise.complete(resource);
+        });
+        return promise;
+    }
+
+    private boolean isFresh(Entry entry, URI upstream) {
+        if (IMMUTABLE_HOSTS.contains(upstream.getHost())) return true;
+        return System.currentTimeMillis() - entry.fetchedAt < config.getMetadataTtlMinutes() * 60_000L;
+    }
+
+    private CompletableFuture<Resource> fetch(String key, URI upstream, byte[] body, String contentType, Entry stale) {
+        HttpRequest.Builder builder = transport.newRequest(upstream);
+        if (body != null) {
+            builder.header("Content-Type", contentType != null ? contentType : "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        } else {
+            builder.GET();
+        }
+        if (stale != null && stale.upstreamEtag != null) {
+            builder.header("If-None-Match", stale.upstreamEtag);
+        } else if (stale != null && stale.upstreamLastModified != null) {
+            builder.header("If-Modified-Since", stale.upstreamLastModified);
+        }
+        boolean modrinthApi = upstream.getHost().equals("api.modrinth.com");
+
+        Path temp;
+        try {
+            temp = Files.createTempFile(cacheDir.resolve("blobs"), "fetch", ".tmp");
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<Void> permit = modrinthApi ? governor.acquire() : CompletableFuture.completedFuture(null);
+        return permit
+                .thenCompose(v -> transport.sendAsync(builder.build(), HttpResponse.BodyHandlers.ofFile(temp)))
+                .thenApply(response -> {
+                    if (modrinthApi) governor.onResponse(response.headers());
+                    try {
+                        return store(key, response, temp, stale);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                })
+                .handle((resource, error) -> {
+                    deleteQuietly(temp);
+                    if (error == null) return resource;
+                    if (stale != null) {
+                        if (config.isDebug()) {
+                            platform.warn("Mirror serving stale copy of " + upstream + ": " + error.getMessage());
+                        }
+                        return stale.toResource(blobPath(stale.sha256));
+                    }
+                    throw error instanceof CompletionException ce ? ce : new CompletionException(error);
+                });
+    }
+
+    private Resource store(String key, HttpResponse<Path> response, Path temp, Entry stale) throws IOException {
+        int status = response.statusCode();
+        long now = System.currentTimeMillis();
+        if (status == 304 && stale != null) {
+            stale.fetchedAt = now;
+            saveEntry(key, stale);
+            return stale.toResource(blobPath(stale.sha256));
+        }
+        String contentType = response.headers().firstValue("Content-Type").orElse(null);
+        if (status != 200) {
+            if (stale != null && (status == 429 || status >= 500)) {
+                return stale.toResource(blobPath(stale.sha256));
+            }
+            // Errors such as Modrinth's 404 for an unknown hash are meaningful to clients
+            // and passed through as they are, without caching
+            return new Resource(status, null, Files.readAllBytes(temp), 0, contentType, null);
+        }
+
+        String sha256 = hasher.hash(temp, HashAlgorithm.SHA256);
+        Path blob = blobPath(sha256);
+        if (!Files.isRegularFile(blob)) {
+            AtomicFiles.move(temp, blob);
+        }
+        Entry entry = new Entry();
+        entry.sha256 = sha256;
+        entry.size = Files.size(blob);
+        entry.contentType = contentType;
+        entry.upstreamEtag = response.headers().firstValue("ETag").orElse(null);
+        entry.upstreamLastModified = response.headers().firstValue("Last-Modified").orElse(null);
+        entry.fetchedAt = now;
+        saveEntry(key, entry);
+        cache(entryName(key), new CacheIndex.Cached(sha256, entry.size));
+        return entry.toResource(blob);
+    }
+
+    private void serve(HttpExchange exchange, Resource resource, boolean head) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        if (resource.contentType() != null) {
+            headers.set("Content-Type", resource.contentType());
+        }
+        if (resource.file() == null) {
+            byte[] bytes = resource.bytes();
+            headers.set("Content-Length", String.valueOf(bytes.length));
+            exchange.sendResponseHeaders(resource.status(), head ? -1 : (bytes.length == 0 ? -1 : bytes.length));
+            if (!head && bytes.length > 0) {
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            }
+            return;
+        }
+
+        String etag = resource.etag();
+        long size = resource.size();
+        headers.set("ETag", etag);
+        headers.set("Accept-Ranges", "bytes");
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null && (ifNoneMatch.trim().equals("*") || ifNoneMatch.contains(etag))) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+
+        long start = 0;
+        long length = size;
+        int status = 200;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] bounds = parseRange(range, size);
+            if (bounds == UNSATISFIABLE) {
+                headers.set("Content-Range", "bytes */" + size);
+                sendEmpty(exchange, 416);
+                return;
+            }
+            if (bounds != null) {
+                start = bounds[0];
+                length = bounds[1] - bounds[0] + 1;
+                status = 206;
+                headers.set("Content-Range", "bytes " + bounds[0] + "-" + bounds[1] + "/" + size);
+            }
+        }
+        headers.set("Content-Length", String.valueOf(length));
+        if (head || length == 0) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(resource.file());
+             OutputStream out = exchange.getResponseBody()) {
+            exchange.sendResponseHeaders(status, length);
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = start;
+            long end = start + length;
+            while (position < end) {
+                long written = channel.transferTo(position, end - position, target);
+                if (written <= 0) throw new IOException("Cached file is shorter than recorded");
+                position += written;
+            }
+        }
+    }
+
+    /**
+     * Parses a single byte range against a resource of {@code size} bytes.
+     * @return inclusive start and end, {@link #UNSATISFIABLE}, or null to ignore the header and
+     *         send everything, as for multiple ranges or syntax it doesn't understand
+     */
+    static long[] parseRange(String header, long size) {
+        if (!header.startsWith("bytes=") || header.contains(",")) return null;
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) return null;
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            // Long.parseLong would take a sign, which a range never has
+            if (!isDigits(first) || !isDigits(last) || first.isEmpty() && last.isEmpty()) return null;
+            if (first.isEmpty()) {
+                // Suffix range: the last N bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || size == 0) return UNSATISFIABLE;
+                return new long[]{Math.max(0, size - suffix), size - 1};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            if (start >= size) return UNSATISFIABLE;
+            if (end < start) return null;
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean isDigits(String text) {
+        return text.chars().allMatch(c -> c >= '0' && c <= '9');
+    }
+
+    private static void sendEmpty(HttpExchange exchange, int status) throws IOException {
+        exchange.sendResponseHeaders(status, -1);
+    }
+
+    private Entry loadEntry(String key) {
+        try {
+            Entry entry = gson.fromJson(Files.readString(entryPath(key), StandardCharsets.UTF_8), Entry.class);
+            // The blob may have been evicted or removed by hand
+            if (entry != null && entry.sha256 != null && Files.isRegularFile(blobPath(entry.sha256))) {
+                return entry;
+            }
+        } catch (NoSuchFileException ignored) {
+        } catch (IOException | JsonParseException e) {
+            if (config.isDebug()) {
+                platform.warn("Mirror cache entry is unreadable, refetching: " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private void saveEntry(String key, Entry entry) throws IOException {
+        AtomicFiles.writeString(entryPath(key), gson.toJson(entry));
+    }
+
+    private Path entryPath(String key) {
+        return cacheDir.resolve("entries").resolve(entryName(key));
+    }
+
+    private static String entryName(String key) {
+        return sha256(key.getBytes(StandardCharsets.UTF_8)) + ".json";
+    }
+
+    /**
+     * Rebuilds the LRU from the cache folder, oldest entry first, and removes blobs that no
+     * entry refers to, e.g. left behind by a crash.
+     */
+    private void indexCache() throws IOException {
+        List<Path> entries;
+        try (Stream<Path> files = Files.list(cacheDir.resolve("entries"))) {
+            entries = new ArrayList<>(files.filter(p -> p.getFileName().toString().endsWith(".json")).toList());
+        }
+        entries.sort(Comparator.comparingLong(MirrorServer::modifiedMillis));
+        index.clear();
+        for (Path file : entries) {
+            Entry entry = null;
+            try {
+                entry = gson.fromJson(Files.readString(file, StandardCharsets.UTF_8), Entry.class);
+            } catch (IOException | JsonParseException ignored) {
+            }
+            if (entry == null || entry.sha256 == null || !Files.isRegularFile(blobPath(entry.sha256))) {
+                deleteQuietly(file);
+                continue;
+            }
+            cache(file.getFileName().toString(), new CacheIndex.Cached(entry.sha256, entry.size));
+        }
+        try (Stream<Path> blobs = Files.list(cacheDir.resolve("blobs"))) {
+            for (Path blob : blobs.toList()) {
+                if (!index.references(blob.getFileName().toString())) deleteQuietly(blob);
+            }
+        }
+    }
+
+    private void markServed(String key) {
+        index.touch(entryName(key));
+        try {
+            // Keeps the order across restarts
+            Files.setLastModifiedTime(entryPath(key), FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Records that entry {@code name} now caches {@code cached}, then deletes the entries and
+     * blobs evicted to keep the cache within its size limit.
+     */
+    private void cache(String name, CacheIndex.Cached cached) {
+        CacheIndex.Removed removed = index.put(name, cached, config.getMirrorMaxSizeMb() * 1024L * 1024L);
+        for (String entry : removed.entries()) {
+            deleteQuietly(cacheDir.resolve("entries").resolve(entry));
+        }
+        // A blob still being served elsewhere may refuse to go on Windows; the next start removes it
+        for (String blob : removed.blobs()) {
+            deleteQuietly(blobPath(blob));
+        }
+        if (config.isDebug() && !removed.entries().isEmpty()) {
+            platform.info("Evicted " + removed.entries().size() + " mirror cache entries, "
+                    + index.bytes() / (1024 * 1024) + " MB left");
+        }
+    }
+
+    private static long modifiedMillis(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private Path blobPath(String sha256) {
+        return cacheDir.resolve("blobs").resolve(sha256);
+    }
+
+    private static String sha256(byte[] data) {
+        MessageDigest digest = HashAlgorithm.SHA256.newDigest();
+        return Hex.encode(digest.digest(data));
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * A response ready to serve: either a cached file or a small pass-through body.
+     */
+    private record Resource(int status, Path file, byte[] bytes, long size, String contentType, String etag) {
+    }
+
+    private static class Entry {
+        String sha256;
+        long size;
+        String contentType;
+        String upstreamEtag;
+        String upstreamLastModified;
+        long fetchedAt;
+
+        Resource toResource(Path blob) {
+            return new Resource(200, blob, null, size, contentType, "\"" + sha256 + "\"");
+        }
+    }
+}
@@ -1,96 +1,133 @@
 package cn.lemwood.geyserupdater.common.modrinth;
 
 import cn.lemwood.geyserupdater.common.api.UpdateClient;
+import cn.lemwood.geyserupdater.common.cache.FingerprintCache;
 import cn.lemwood.geyserupdater.common.config.ConfigManager;
+import cn.lemwood.geyserupdater.common.http.EndpointSelector;
+import cn.lemwood.geyserupdater.common.http.HttpTransport;
+import cn.lemwood.geyserupdater.common.http.MetadataCache;
+import cn.lemwood.geyserupdater.common.http.RateLimitGovernor;
+import cn.lemwood.geyserupdater.common.http.RateLimitedException;
+import cn.lemwood.geyserupdater.common.http.RequestGuard;
+import cn.lemwood.geyserupdater.common.hash.HashAlgorithm;
+import cn.lemwood.geyserupdater.common.index.DirectoryIndex;
 import cn.lemwood.geyserupdater.common.platform.PlatformAdapter;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.URLEncoder;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 public class ModrinthClient implements UpdateClient {
-    private static final String BASE_URL = "https://api.modrinth.com/v2"; 
-    private final HttpClient httpClient;
-    private final Gson gson;
+    public static final String BASE_URL = "https://api.modrinth.com/v2"; 
+    private static final String GAME_VERSION = "1.21";
+    private static final int MAX_RATE_LIMIT_RETRIES = 2;
+    // How many of each project's newest versions a batched lookup considers
+    private static final int BATCH_RECENT_VERSIONS = 20;
+    private final HttpTransport transport;
+    private final EndpointSelector endpoints;
+    private final RateLimitGovernor governor;
+    private final MetadataCache metadataCache;
+    private final FingerprintCache fingerprints;
+    private final DirectoryIndex index;
+    private final Gson gson = new Gson();
     private final PlatformAdapter platform;
     private final ConfigManager config;
 
-    public ModrinthClient(PlatformAdapter platform, ConfigManager config) {
+    public ModrinthClient(PlatformAdapter platform, ConfigManager config, HttpTransport transport, EndpointSelector endpoints,
+                          RateLimitGovernor governor, MetadataCache metadataCache, FingerprintCache fingerprints,
+                          DirectoryIndex index) {
         this.platform = platform;
         this.config = config;
-        this.httpClient = HttpClient.newHttpClient();
-        this.gson = new Gson();
+        this.transport = transport;
+        this.endpoints = endpoints;
+        this.governor = governor;
+        this.metadataCache = metadataCache;
+        this.fingerprints = fingerprints;
+        this.index = index;
     }
 
+    @Override
+    public Collection<URI> getEndpoints() {
+        List<URI> uris = new ArrayList<>();
+        endpoints.getBases().forEach(base -> uris.add(URI.create(base)));
+        return uris;
+    }
+
+    /**
+     * In HASH resolution mode an installed project is resolved by asking Modrinth which
+     * version supersedes the exact installed file; otherwise, or if Modrinth doesn't know
+     * the file, the newest listed version is used. Only the former is marked as
+     * {@link UpdateVersion#supersedesInstalled superseding} the installed jar, so a listed
+     * version replaces it only if it is known to be newer.
+     */
     @Override
     public CompletableFuture<UpdateVersion> getLatestVersion(String projectId) {
+        if (!config.isHashResolution()) return getLatestListedVersion(projectId);
+        return installedHash(projectId).thenCompose(hash -> {
+            if (hash == null) return getLatestListedVersion(projectId);
+            return fetchByHash(projectId, hash).thenCompose(version -> version != null
+                    ? CompletableFuture.completedFuture(version)
+                    : getLatestListedVersion(projectId));
+        });
+    }
+
+    private CompletableFuture<UpdateVersion> getLatestListedVersion(String projectId) {
         String loader = platform.getModrinthLoader();
-        String gameVersion = "1.21"; 
+        String gameVersion = GAME_VERSION;
         
         try {
             String loadersParam = String.format("[\"%s\"]", loader);
             String gameVersionsParam = String.format("[\"%s\"]", gameVersion);
             
-            String url = String.format("%s/project/%s/version?loaders=%s&game_versions=%s", 
-                BASE_URL, projectId, 
+            String path = String.format("/project/%s/version?loaders=%s&game_versions=%s", 
+                projectId, 
                 URLEncoder.encode(loadersParam, StandardCharsets.UTF_8),
                 URLEncoder.encode(gameVersionsParam, StandardCharsets.UTF_8));
+            // The parsed result depends on the alpha/beta filters, so they are part of the cache key.
+            // Keyed by the official URL whichever endpoint answers, so switching mirrors keeps the cache.
+            String cacheKey = BASE_URL + path + "#alpha=" + config.isAllowAlpha() + ",beta=" + config.isAllowBeta();
 
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .header("User-Agent", "lemwood/GeyserUpdater/1.0.0 (leemwood@example.com)")
-                    .GET()
-                    .build();
-
-            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+            return send(base -> {
+                        HttpRequest.Builder builder = transport.newRequest(URI.create(base + path)).GET();
+                        metadataCache.applyValidators(cacheKey, builder);
+                        return builder.build();
+                    })
                     .thenApply(response -> {
+                        if (metadataCache.isNotModified(cacheKey, response)) {
+                            closeQuietly(response.body());
+                            if (config.isDebug()) {
+                                platform.info("Modrinth versions for " + projectId + " not modified, using cached result");
+                            }
+                            return metadataCache.getVersion(cacheKey);
+                        }
                         if (response.statusCode() != 200) {
+                            closeQuietly(response.body());
                             platform.warn("Failed to fetch updates for " + projectId + ": " + response.statusCode());
                             return null;
                         }
                         
                         try {
-                            JsonArray versions = gson.fromJson(response.body(), JsonArray.class);
-                            for (JsonElement verElem : versions) {
-                                JsonObject verObj = verElem.getAsJsonObject();
-                                String versionType = verObj.get("version_type").getAsString();
-                                
-                                if (!config.isAllowAlpha() && "alpha".equalsIgnoreCase(versionType)) continue;
-                                if (!config.isAllowBeta() && "beta".equalsIgnoreCase(versionType)) continue;
-                                
-                                UpdateVersion version = new UpdateVersion();
-                                version.versionNumber = verObj.get("version_number").getAsString();
-                                
-                                JsonArray files = verObj.getAsJsonArray("files");
-                                if (files.size() > 0) {
-                                    JsonObject fileObj = files.get(0).getAsJsonObject();
-                                    for (JsonElement f : files) {
-                                         if (f.getAsJsonObject().has("primary") && f.getAsJsonObject().get("primary").getAsBoolean()) {
-                                             fileObj = f.getAsJsonObject();
-                                             break;
-                                         }
-                                    }
-                                    version.downloadUrl = fileObj.get("url").getAsString();
-                                    version.filename = fileObj.get("filename").getAsString();
-                                    
-                                    if (fileObj.has("hashes")) {
-                                        JsonObject hashes = fileObj.getAsJsonObject("hashes");
-                                        if (hashes.has("sha256")) {
-                                            version.sha256 = hashes.get("sha256").getAsString();
-                                        }
-                                    }
-                                    
-                                    return version;
-                                }
-                            }
+                            UpdateVersion version = parseVersions(response.body());
+                            metadataCache.store(cacheKey, response.headers(), version);
+                            return version;
                         } catch (Exception e) {
                             platform.error("Error parsing Modrinth response", e);
                         }
@@ -102,4 +139,421 @@ public class ModrinthClient implements UpdateClient {
             return failed;
         }
     }
+
+    /**
+     * Resolves every installed project with a single {@code POST /version_files/update},
+     * keyed by the SHA-512 of the installed jars. Projects that are not installed, or whose
+     * jar Modrinth doesn't know, are resolved from the version lists, batched as well.
+     */
+    @Override
+    public CompletableFuture<Map<String, UpdateVersion>> getLatestVersions(Collection<String> projectIds) {
+        if (!config.isHashResolution()) return getLatestListedVersions(projectIds);
+        Map<String, CompletableFuture<String>> hashes = new LinkedHashMap<>();
+        for (String projectId : projectIds) {
+            hashes.put(projectId, installedHash(projectId));
+        }
+        return CompletableFuture.allOf(hashes.values().toArray(new CompletableFuture<?>[0])).thenCompose(v -> {
+            Map<String, String> projectsByHash = new HashMap<>();
+            hashes.forEach((projectId, hash) -> {
+                if (hash.join() != null) projectsByHash.put(hash.join(), projectId);
+            });
+
+            CompletableFuture<Map<String, UpdateVersion>> batch = projectsByHash.isEmpty()
+                    ? CompletableFuture.completedFuture(new HashMap<>())
+                    : fetchByHashes(projectsByHash);
+            return batch.thenCompose(found -> {
+                List<String> remaining = new ArrayList<>();
+                for (String projectId : projectIds) {
+                    if (found.get(projectId) == null) remaining.add(projectId);
+                }
+                if (config.isDebug() && !found.isEmpty()) {
+                    platform.info("Resolved " + found.size() + " project(s) in one batched Modrinth request");
+                }
+                if (remaining.isEmpty()) return CompletableFuture.completedFuture(found);
+                // These were either not hashed or unknown to the hash lookup, so go straight to the version list
+                return getLatestListedVersions(remaining).thenApply(listed -> {
+                    Map<String, UpdateVersion> result = new HashMap<>(found);
+                    result.putAll(listed);
+                    return result;
+                });
+            });
+        });
+    }
+
+    /**
+     * Resolves several projects from their version lists, in one batch where that saves
+     * requests. Projects the batch can't settle are looked up one by one.
+     */
+    private CompletableFuture<Map<String, UpdateVersion>> getLatestListedVersions(Collection<String> projectIds) {
+        // The batch always takes two requests, so it only pays off for more projects than that
+        CompletableFuture<Map<String, UpdateVersion>> batch = projectIds.size() > 2
+                ? fetchListedVersions(projectIds)
+                : CompletableFuture.completedFuture(new HashMap<>());
+        return batch.thenCompose(found -> {
+            if (config.isDebug() && !found.isEmpty()) {
+                platform.info("Resolved " + found.size() + " project(s) from one batched Modrinth version list");
+            }
+            Map<String, CompletableFuture<UpdateVersion>> listed = new HashMap<>();
+            for (String projectId : projectIds) {
+                if (found.get(projectId) == null) {
+                    listed.put(projectId, getLatestListedVersion(projectId).exceptionally(e -> null));
+                }
+            }
+            return CompletableFuture.allOf(listed.values().toArray(new CompletableFuture<?>[0])).thenApply(x -> {
+                Map<String, UpdateVersion> result = new HashMap<>(found);
+                listed.forEach((projectId, future) -> result.put(projectId, future.join()));
+                return result;
+            });
+        });
+    }
+
+    /**
+     * Looks up the newest versions of several projects with two requests in total:
+     * {@code GET /projects?ids=} for their version IDs, then {@code GET /versions?ids=} for
+     * the most recent of those. The versions are filtered here the way the per-project list
+     * is filtered by the server. A project with no match among its recent versions is left
+     * out of the result.
+     */
+    private CompletableFuture<Map<String, UpdateVersion>> fetchListedVersions(Collection<String> projectIds) {
+        String projectsPath = "/projects?ids=" + URLEncoder.encode(gson.toJson(projectIds), StandardCharsets.UTF_8);
+        return send(base -> transport.newRequest(URI.create(base + projectsPath)).GET().build())
+                .thenCompose(response -> {
+                    if (response.statusCode() != 200) {
+                        closeQuietly(response.body());
+                        if (config.isDebug()) {
+                            platform.info("Batched Modrinth project lookup failed: " + response.statusCode());
+                        }
+                        return CompletableFuture.completedFuture(new HashMap<String, UpdateVersion>());
+                    }
+                    Map<String, String> projectsByVersion;
+                    try {
+                        projectsByVersion = readRecentVersionIds(response.body(), projectIds);
+                    } catch (Exception e) {
+                        platform.error("Error parsing batched Modrinth response", e);
+                        return CompletableFuture.completedFuture(new HashMap<String, UpdateVersion>());
+                    }
+                    if (projectsByVersion.isEmpty()) {
+                        return CompletableFuture.completedFuture(new HashMap<String, UpdateVersion>());
+                    }
+                    return fetchVersions(projectsByVersion);
+                })
+                .exceptionally(e -> {
+                    platform.warn("Batched Modrinth lookup failed: " + e.getMessage());
+                    return new HashMap<>();
+                });
+    }
+
+    /**
+     * @return the IDs of each requested project's most recent versions, mapped to the project ID
+     *         as it was requested, which may be a slug
+     */
+    private Map<String, String> readRecentVersionIds(InputStream body, Collection<String> projectIds) throws IOException {
+        Map<String, String> projectsByVersion = new HashMap<>();
+        try (JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                String id = null;
+                String slug = null;
+                List<String> versions = List.of();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case "id" -> id = reader.nextString();
+                        case "slug" -> slug = reader.nextString();
+                        case "versions" -> versions = readStrings(reader);
+                        default -> reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                String requested = null;
+                for (String projectId : projectIds) {
+                    if (projectId.equals(id) || projectId.equalsIgnoreCase(slug)) requested = projectId;
+                }
+                if (requested == null) continue;
+                // Listed oldest first
+                for (String version : versions.subList(Math.max(0, versions.size() - BATCH_RECENT_VERSIONS), versions.size())) {
+                    projectsByVersion.put(version, requested);
+                }
+            }
+            reader.endArray();
+        }
+        return projectsByVersion;
+    }
+
+    private CompletableFuture<Map<String, UpdateVersion>> fetchVersions(Map<String, String> projectsByVersion) {
+        String versionsPath = "/versions?ids="
+                + URLEncoder.encode(gson.toJson(projectsByVersion.keySet()), StandardCharsets.UTF_8);
+        String loader = platform.getModrinthLoader();
+        return send(base -> transport.newRequest(URI.create(base + versionsPath)).GET().build())
+                .thenApply(response -> {
+                    Map<String, UpdateVersion> result = new HashMap<>();
+                    if (response.statusCode() != 200) {
+                        closeQuietly(response.body());
+                        if (config.isDebug()) {
+                            platform.info("Batched Modrinth version lookup failed: " + response.statusCode());
+                        }
+                        return result;
+                    }
+                    Map<String, VersionEntry> newest = new HashMap<>();
+                    try (JsonReader reader = new JsonReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            VersionEntry entry = readVersion(reader);
+                            String projectId = projectsByVersion.get(entry.id);
+                            if (projectId == null || entry.file == null || !isAllowed(entry.versionType)
+                                    || !entry.loaders.contains(loader) || !entry.gameVersions.contains(GAME_VERSION)) {
+                                continue;
+                            }
+                            // Returned in no particular order; ISO-8601 timestamps sort as strings
+                            newest.merge(projectId, entry, (a, b) ->
+                                    String.valueOf(a.datePublished).compareTo(String.valueOf(b.datePublished)) >= 0 ? a : b);
+                        }
+                        reader.endArray();
+                    } catch (Exception e) {
+                        platform.error("Error parsing batched Modrinth response", e);
+                        return result;
+                    }
+                    newest.forEach((projectId, entry) -> {
+                        entry.file.versionNumber = entry.versionNumber;
+                        result.put(projectId, entry.file);
+                    });
+                    return result;
+                });
+    }
+
+    private static List<String> readStrings(JsonReader reader) throws IOException {
+        List<String> values = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) values.add(reader.nextString());
+        reader.endArray();
+        return values;
+    }
+
+    private CompletableFuture<String> installedHash(String projectId) {
+        Path jar = index.find(projectId, platform.getDownloadFolder(projectId, false));
+        if (jar == null) return CompletableFuture.completedFuture(null);
+        return fingerprints.getHashAsync(jar, HashAlgorithm.SHA512).exceptionally(e -> null);
+    }
+
+    private CompletableFuture<UpdateVersion> fetchByHash(String projectId, String hash) {
+        String query = gson.toJson(newUpdateQuery());
+        Function<String, HttpRequest> request = base -> transport.newRequest(URI.create(base + "/version_file/" + hash
+                        + "/update?algorithm=" + HashAlgorithm.SHA512.getKey()))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(query))
+                .build();
+
+        return send(request)
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        // 404 means Modrinth doesn't know this file, e.g. a jar from another source
+                        closeQuietly(response.body());
+                        if (config.isDebug()) {
+                            platform.info("No Modrinth version matches the installed " + projectId + " jar (" + response.statusCode() + ")");
+                        }
+                        return null;
+                    }
+                    try (JsonReader reader = new JsonReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+                        VersionEntry entry = readVersion(reader);
+                        if (entry.file == null || !isAllowed(entry.versionType)) return null;
+                        entry.file.versionNumber = entry.versionNumber;
+                        entry.file.supersedesInstalled = true;
+                        return entry.file;
+                    } catch (Exception e) {
+                        platform.error("Error parsing Modrinth response", e);
+                        return null;
+                    }
+                });
+    }
+
+    private JsonObject newUpdateQuery() {
+        JsonObject body = new JsonObject();
+        JsonArray loaders = new JsonArray();
+        loaders.add(platform.getModrinthLoader());
+        body.add("loaders", loaders);
+        JsonArray gameVersions = new JsonArray();
+        gameVersions.add(GAME_VERSION);
+        body.add("game_versions", gameVersions);
+        return body;
+    }
+
+    private CompletableFuture<Map<String, UpdateVersion>> fetchByHashes(Map<String, String> projectsByHash) {
+        JsonObject body = newUpdateQuery();
+        JsonArray hashArray = new JsonArray();
+        projectsByHash.keySet().forEach(hashArray::add);
+        body.add("hashes", hashArray);
+        body.addProperty("algorithm", HashAlgorithm.SHA512.getKey());
+
+        String query = gson.toJson(body);
+        Function<String, HttpRequest> request = base -> transport.newRequest(URI.create(base + "/version_files/update"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(query))
+                .build();
+
+        return send(request)
+                .thenApply(response -> {
+                    Map<String, UpdateVersion> result = new HashMap<>();
+                    if (response.statusCode() != 200) {
+                        closeQuietly(response.body());
+                        platform.warn("Batched Modrinth lookup failed: " + response.statusCode());
+                        return result;
+                    }
+                    try (JsonReader reader = new JsonReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            String projectId = projectsByHash.get(reader.nextName());
+                            VersionEntry entry = readVersion(reader);
+                            // The update endpoint ignores the alpha/beta settings; leave those
+                            // projects to the filtered per-project lookup
+                            if (projectId == null || entry.file == null || !isAllowed(entry.versionType)) continue;
+                            entry.file.versionNumber = entry.versionNumber;
+                            entry.file.supersedesInstalled = true;
+                            result.put(projectId, entry.file);
+                        }
+                        reader.endObject();
+                    } catch (Exception e) {
+                        platform.error("Error parsing batched Modrinth response", e);
+                    }
+                    return result;
+                })
+                .exceptionally(e -> {
+                    platform.warn("Batched Modrinth lookup failed: " + e.getMessage());
+                    return new HashMap<>();
+                });
+    }
+
+    private boolean isAllowed(String versionType) {
+        if (!config.isAllowAlpha() && "alpha".equalsIgnoreCase(versionType)) return false;
+        if (!config.isAllowBeta() && "beta".equalsIgnoreCase(versionType)) return false;
+        return true;
+    }
+
+    /**
+     * Sends a request within Modrinth's rate limit. A 429 pauses all requests for the
+     * Retry-After period, after which the request is retried a limited number of times.
+     * Network errors and server errors are retried by the {@link RequestGuard}, and the
+     * {@link EndpointSelector} decides which mirror the request goes to.
+     * @param request builds the request for an API base URL
+     */
+    private CompletableFuture<HttpResponse<InputStream>> send(Function<String, HttpRequest> request) {
+        return send(request, 0);
+    }
+
+    private CompletableFuture<HttpResponse<InputStream>> send(Function<String, HttpRequest> request, int attempt) {
+        return endpoints.send(request, HttpResponse.BodyHandlers.ofInputStream(), governor::acquire)
+                .thenCompose(response -> {
+                    governor.onResponse(response.headers());
+                    if (response.statusCode() != 429) return CompletableFuture.completedFuture(response);
+
+                    closeQuietly(response.body());
+                    governor.onTooManyRequests(response.headers());
+                    if (attempt >= MAX_RATE_LIMIT_RETRIES) {
+                        return CompletableFuture.failedFuture(new RateLimitedException("Modrinth",
+                                RateLimitGovernor.retryAfterMillis(response.headers())));
+                    }
+                    return send(request, attempt + 1);
+                });
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Reads the version list as a stream and stops at the first version that passes the
+     * alpha/beta filters, so memory stays bounded by a single version regardless of how
+     * long the project's history is.
+     */
+    private UpdateVersion parseVersions(InputStream body) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                VersionEntry entry = readVersion(reader);
+                if (!isAllowed(entry.versionType)) continue;
+                if (entry.file != null) {
+                    entry.file.versionNumber = entry.versionNumber;
+                    return entry.file;
+                }
+            }
+        }
+        return null;
+    }
+
+    private VersionEntry readVersion(JsonReader reader) throws IOException {
+        VersionEntry entry = new VersionEntry();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id" -> entry.id = reader.nextString();
+                case "loaders" -> entry.loaders = readStrings(reader);
+                case "game_versions" -> entry.gameVersions = readStrings(reader);
+                case "date_published" -> entry.datePublished = reader.nextString();
+                case "version_type" -> entry.versionType = reader.nextString();
+                case "version_number" -> entry.versionNumber = reader.nextString();
+                case "files" -> entry.file = readPrimaryFile(reader);
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return entry;
+    }
+
+    /**
+     * Picks the file flagged as primary, or the first file if none is.
+     */
+    private UpdateVersion readPrimaryFile(JsonReader reader) throws IOException {
+        UpdateVersion first = null;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            boolean primary = false;
+            UpdateVersion file = new UpdateVersion();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "url" -> file.downloadUrl = reader.nextString();
+                    case "filename" -> file.filename = reader.nextString();
+                    case "size" -> file.size = reader.nextLong();
+                    case "primary" -> primary = reader.nextBoolean();
+                    case "hashes" -> readHashes(reader, file);
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (primary) {
+                // The primary file is all we need, skip the rest
+                while (reader.hasNext()) reader.skipValue();
+                reader.endArray();
+                return file;
+            }
+            if (first == null) first = file;
+        }
+        reader.endArray();
+        return first;
+    }
+
+    private void readHashes(JsonReader reader, UpdateVersion file) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "sha1" -> file.sha1 = reader.nextString();
+                case "sha256" -> file.sha256 = reader.nextString();
+                case "sha512" -> file.sha512 = reader.nextString();
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static class VersionEntry {
+        String id;
+        List<String> loaders = List.of();
+        List<String> gameVersions = List.of();
+        String datePublished;
+        String versionType;
+        String versionNumber;
+        UpdateVersion file;
+    }
 }
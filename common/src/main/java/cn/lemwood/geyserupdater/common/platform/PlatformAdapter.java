@@ -1,6 +1,11 @@
 package cn.lemwood.geyserupdater.common.platform;
 
+import cn.lemwood.geyserupdater.common.index.DirectoryIndex;
+import cn.lemwood.geyserupdater.common.jar.JarMetadataReader;
+import cn.lemwood.geyserupdater.common.version.Version;
+
 import java.nio.file.Path;
+import java.util.OptionalInt;
 
 public interface PlatformAdapter {
     Path getDataDirectory();
@@ -30,6 +35,23 @@ public interface PlatformAdapter {
      */
     String getInstalledVersion(String projectId);
 
+    /**
+     * Reads the installed version from the project's jar, for when the platform can't say.
+     * @return version string, or null if there is no jar or it declares no version
+     */
+    default String readInstalledVersion(String projectId) {
+        JarMetadataReader.JarMetadata metadata = readInstalledMetadata(projectId);
+        return metadata != null ? metadata.version() : null;
+    }
+
+    /**
+     * @return the version and build declared by the project's installed jar, or null if there is no readable jar
+     */
+    default JarMetadataReader.JarMetadata readInstalledMetadata(String projectId) {
+        Path jar = findInstalledJar(projectId, getDownloadFolder(projectId, false));
+        return jar != null ? JarMetadataReader.read(jar) : null;
+    }
+
     /**
      * Checks if a project is installed using platform API.
      * @param projectId "geyser", "floodgate", or "geyserextras"
@@ -43,37 +65,66 @@ public interface PlatformAdapter {
      * Compares the installed version with the remote version.
      * @param projectId The project ID
      * @param remoteVersion The version string from remote API
-     * @return true if the versions are different (update needed), false otherwise
+     * @return true if the remote version is strictly newer (update needed), or if the two
+     *         can't be ordered and the checksum has to decide; false otherwise
      */
     default boolean compareVersion(String projectId, String remoteVersion) {
+        OptionalInt order = compareInstalled(projectId, remoteVersion);
+        return order.isEmpty() || order.getAsInt() > 0;
+    }
+
+    /**
+     * Orders the remote version against the installed one like {@link Version#compare}.
+     * @return positive if the remote version is newer, or empty if the installed version is
+     *         unknown or the two can't be ordered
+     */
+    default OptionalInt compareInstalled(String projectId, String remoteVersion) {
         String installed = getInstalledVersion(projectId);
-        if (installed == null) return true; // Assume update needed if unknown
-        return !installed.equals(remoteVersion);
+        if (installed == null) return OptionalInt.empty();
+        Version current = Version.parse(installed);
+        if (current.getBuild() < 0) {
+            // e.g. "2.4.1-SNAPSHOT"; Geyser keeps the build number in the jar's git.properties
+            JarMetadataReader.JarMetadata metadata = readInstalledMetadata(projectId);
+            if (metadata != null) current = current.withBuild(metadata.build());
+        }
+        return Version.compare(Version.parse(remoteVersion), current);
+    }
+
+    /**
+     * Tells whether installed jars are only ever replaced by moving a new file over them. Only
+     * then may the artifact store hard-link them: a server that overwrites a jar in place would
+     * write through the link into every other server sharing the same file.
+     * @return false to make the artifact store copy jars instead of linking them
+     */
+    default boolean replacesJarsByRename() {
+        return true;
+    }
+
+    /**
+     * Returns the updater's index of the plugin folders, through which the jar lookups above
+     * are answered from memory.
+     * @return the index, or null before the updater has started
+     */
+    default DirectoryIndex getDirectoryIndex() {
+        return null;
     }
 
     /**
-     * Finds the installed jar file for a project in the given directory.
+     * Finds the installed jar file for a project in the given directory. If there are
+     * several, the most recently modified one is returned. The folder is only listed when
+     * there is no {@link #getDirectoryIndex() index} to ask.
      * @param projectId The project ID
      * @param searchDir The directory to search in
      * @return Path to the found jar file, or null if not found
      */
     default Path findInstalledJar(String projectId, Path searchDir) {
-        String[] possiblePrefixes = switch (projectId) {
-            case "geyser" -> new String[]{"Geyser", "geyser"};
-            case "floodgate" -> new String[]{"floodgate", "Floodgate"};
-            case "geyserextras" -> new String[]{"GeyserExtras", "geyserextras"};
-            default -> new String[]{projectId};
-        };
-        
-        try {
-            return java.nio.file.Files.list(searchDir)
-                .filter(p -> p.toString().endsWith(".jar"))
-                .filter(p -> {
-                    String name = p.getFileName().toString().toLowerCase();
-                    return java.util.Arrays.stream(possiblePrefixes)
-                        .anyMatch(prefix -> name.startsWith(prefix.toLowerCase()));
-                })
-                .findFirst()
+        DirectoryIndex index = getDirectoryIndex();
+        if (index != null) return index.find(projectId, searchDir);
+        try (java.util.stream.Stream<Path> entries = java.nio.file.Files.list(searchDir)) {
+            return entries
+                .filter(p -> DirectoryIndex.matches(projectId, p.getFileName().toString()))
+                .max(java.util.Comparator.comparing((Path p) -> p.toFile().lastModified())
+                        .thenComparing(java.util.Comparator.reverseOrder()))
                 .orElse(null);
         } catch (java.io.IOException e) {
             return null;
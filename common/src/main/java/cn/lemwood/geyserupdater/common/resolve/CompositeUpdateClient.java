@@ -0,0 +1,183 @@
+package cn.lemwood.geyserupdater.common.resolve;
+
+import cn.lemwood.geyserupdater.common.api.UpdateClient;
+import cn.lemwood.geyserupdater.common.config.ConfigManager;
+import cn.lemwood.geyserupdater.common.platform.PlatformAdapter;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolves each project through the sources routed to it.
+ * <p>
+ * A route lists sources in order of preference. Normally the next source is only asked when
+ * the previous one found nothing; in race mode all of them are asked at once, the first
+ * usable answer wins and the other requests are cancelled. Projects always resolve in
+ * parallel, and projects whose route starts with the same source are handed to it as one
+ * batch so bulk lookups still apply.
+ */
+public class CompositeUpdateClient implements UpdateClient {
+    public static final String MODRINTH = "modrinth";
+    public static final String GEYSER = "geyser";
+
+    private final PlatformAdapter platform;
+    private final ConfigManager config;
+    private final Map<String, UpdateClient> sources;
+
+    /**
+     * @param sources every available source by name, e.g. {@link #MODRINTH} and {@link #GEYSER}
+     */
+    public CompositeUpdateClient(PlatformAdapter platform, ConfigManager config, Map<String, UpdateClient> sources) {
+        this.platform = platform;
+        this.config = config;
+        this.sources = sources;
+    }
+
+    /**
+     * @return the sources to ask for {@code projectId}, most preferred first
+     */
+    public List<String> routeOf(String projectId) {
+        List<String> route = new ArrayList<>();
+        for (String source : config.getSourceRoutes().getOrDefault(projectId, List.of())) {
+            if (sources.containsKey(source)) {
+                route.add(source);
+            } else {
+                platform.warn("Unknown update source '" + source + "' configured for " + projectId);
+            }
+        }
+        return route.isEmpty() ? defaultRoute(projectId) : route;
+    }
+
+    /**
+     * Geyser Standalone takes Geyser and Floodgate from the Geyser Downloads API, which has
+     * no GeyserExtras, so that one comes from Modrinth. Everything else uses Modrinth.
+     */
+    private List<String> defaultRoute(String projectId) {
+        if ("geyser".equals(platform.getModrinthLoader()) && !"geyserextras".equals(projectId)) {
+            return List.of(GEYSER, MODRINTH);
+        }
+        return List.of(MODRINTH);
+    }
+
+    @Override
+    public CompletableFuture<UpdateVersion> getLatestVersion(String projectId) {
+        List<String> route = routeOf(projectId);
+        return config.isSourceRaceEnabled() ? race(projectId, route) : fallback(projectId, route, 0);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, UpdateVersion>> getLatestVersions(Collection<String> projectIds) {
+        if (config.isSourceRaceEnabled()) return UpdateClient.super.getLatestVersions(projectIds);
+
+        // One batch per first-choice source; projects it can't resolve move down their own route
+        Map<String, List<String>> batches = new LinkedHashMap<>();
+        for (String projectId : projectIds) {
+            batches.computeIfAbsent(routeOf(projectId).get(0), s -> new ArrayList<>()).add(projectId);
+        }
+        Map<String, CompletableFuture<UpdateVersion>> futures = new LinkedHashMap<>();
+        batches.forEach((source, batch) -> {
+            CompletableFuture<Map<String, UpdateVersion>> found = sources.get(source).getLatestVersions(batch)
+                    .exceptionally(e -> {
+                        platform.warn("Update source " + source + " failed: " + e.getMessage());
+                        return Map.of();
+                    });
+            for (String projectId : batch) {
+                futures.put(projectId, found.thenCompose(versions -> {
+                    UpdateVersion version = versions.get(projectId);
+                    return isUsable(version) ? CompletableFuture.completedFuture(tag(version, source))
+                            : fallback(projectId, routeOf(projectId), 1);
+                }).exceptionally(e -> null));
+            }
+        });
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            Map<String, UpdateVersion> result = new HashMap<>();
+            futures.forEach((projectId, future) -> result.put(projectId, future.join()));
+            return result;
+        });
+    }
+
+    @Override
+    public Collection<URI> getEndpoints() {
+        Set<String> used = new LinkedHashSet<>();
+        for (String projectId : config.getSourceRoutes().keySet()) used.addAll(routeOf(projectId));
+        used.addAll(defaultRoute("geyser"));
+        used.addAll(defaultRoute("geyserextras"));
+        Set<URI> endpoints = new LinkedHashSet<>();
+        for (String source : used) endpoints.addAll(sources.get(source).getEndpoints());
+        return endpoints;
+    }
+
+    private CompletableFuture<UpdateVersion> fallback(String projectId, List<String> route, int index) {
+        if (index >= route.size()) return CompletableFuture.completedFuture(null);
+        String source = route.get(index);
+        return ask(source, projectId).thenCompose(version -> {
+            if (isUsable(version)) return CompletableFuture.completedFuture(tag(version, source));
+            if (config.isDebug() && index + 1 < route.size()) {
+                platform.info(source + " has no version of " + projectId + ", trying " + route.get(index + 1));
+            }
+            return fallback(projectId, route, index + 1);
+        });
+    }
+
+    private CompletableFuture<UpdateVersion> race(String projectId, List<String> route) {
+        if (route.size() == 1) {
+            String source = route.get(0);
+            return ask(source, projectId).thenApply(version -> isUsable(version) ? tag(version, source) : version);
+        }
+        CompletableFuture<UpdateVersion> winner = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(route.size());
+        List<CompletableFuture<UpdateVersion>> requests = new ArrayList<>();
+        for (String source : route) {
+            // Cancelling the source's own future stops it from parsing an answer nobody needs
+            CompletableFuture<UpdateVersion> request;
+            try {
+                request = sources.get(source).getLatestVersion(projectId);
+            } catch (RuntimeException e) {
+                request = CompletableFuture.failedFuture(e);
+            }
+            requests.add(request);
+            request.whenComplete((version, error) -> {
+                if (isUsable(version)) {
+                    if (winner.complete(tag(version, source)) && config.isDebug()) {
+                        platform.info("Resolved " + projectId + " from " + source + " first");
+                    }
+                } else if (outstanding.decrementAndGet() == 0) {
+                    winner.complete(null);
+                }
+            });
+        }
+        winner.whenComplete((version, error) -> requests.forEach(request -> request.cancel(true)));
+        return winner;
+    }
+
+    private CompletableFuture<UpdateVersion> ask(String source, String projectId) {
+        try {
+            return sources.get(source).getLatestVersion(projectId).exceptionally(e -> {
+                if (config.isDebug()) {
+                    platform.info("Update source " + source + " failed for " + projectId + ": " + e.getMessage());
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private static UpdateVersion tag(UpdateVersion version, String source) {
+        version.source = source;
+        return version;
+    }
+
+    private static boolean isUsable(UpdateVersion version) {
+        return version != null && version.downloadUrl != null && version.filename != null;
+    }
+}
@@ -0,0 +1,22 @@
+package cn.lemwood.geyserupdater.common.resolve;
+
+import cn.lemwood.geyserupdater.common.api.UpdateClient;
+
+/**
+ * A resolved version together with how current it is.
+ * @param version The version, or null if nothing usable is known
+ * @param freshness Whether the version is within its TTL
+ * @param fetchedAt Epoch millis of the fetch that produced the version, or 0 if unknown
+ */
+public record Resolution(UpdateClient.UpdateVersion version, Freshness freshness, long fetchedAt) {
+    public static final Resolution MISSING = new Resolution(null, Freshness.MISSING, 0);
+
+    public enum Freshness {
+        /** Fetched within the configured TTL */
+        FRESH,
+        /** Older than the TTL but within the hard max-age; a refresh is under way */
+        STALE,
+        /** Nothing cached, or the cached value is past the hard max-age */
+        MISSING
+    }
+}
@@ -0,0 +1,278 @@
+package cn.lemwood.geyserupdater.common.resolve;
+
+import cn.lemwood.geyserupdater.common.api.UpdateClient;
+import cn.lemwood.geyserupdater.common.config.ConfigManager;
+import cn.lemwood.geyserupdater.common.platform.PlatformAdapter;
+import cn.lemwood.geyserupdater.common.util.AtomicFiles;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Offline-first layer in front of another {@link UpdateClient}.
+ * <p>
+ * The last known-good version of every project is kept on disk. Within the TTL it is served
+ * without touching the network; past the TTL it is still served immediately while a refresh
+ * runs in the background. Only once the hard max-age is exceeded (or nothing is cached) does
+ * a caller have to wait for the upstream client.
+ */
+public class StaleWhileRevalidateClient implements UpdateClient {
+    private static final int FORMAT_VERSION = 1;
+
+    private final PlatformAdapter platform;
+    private final ConfigManager config;
+    private final UpdateClient delegate;
+    private final Path storeFile;
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private final Map<String, CompletableFuture<UpdateVersion>> inFlight = new ConcurrentHashMap<>();
+    private volatile Map<String, Entry> entries;
+
+    public StaleWhileRevalidateClient(PlatformAdapter platform, ConfigManager config, UpdateClient delegate, Path storeFile) {
+        this.platform = platform;
+        this.config = config;
+        this.delegate = delegate;
+        this.storeFile = storeFile;
+    }
+
+    @Override
+    public CompletableFuture<UpdateVersion> getLatestVersion(String projectId) {
+        return resolve(projectId).thenApply(Resolution::version);
+    }
+
+    @Override
+    public Collection<URI> getEndpoints() {
+        return delegate.getEndpoints();
+    }
+
+    @Override
+    public CompletableFuture<Map<String, UpdateVersion>> getLatestVersions(Collection<String> projectIds) {
+        Map<String, UpdateVersion> result = new HashMap<>();
+        List<String> stale = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        for (String projectId : projectIds) {
+            Resolution cached = getCached(projectId);
+            switch (cached.freshness()) {
+                case FRESH -> result.put(projectId, cached.version());
+                case STALE -> {
+                    result.put(projectId, cached.version());
+                    stale.add(projectId);
+                }
+                default -> missing.add(projectId);
+            }
+        }
+
+        List<String> toRefresh = new ArrayList<>(stale);
+        toRefresh.addAll(missing);
+        if (toRefresh.isEmpty()) return CompletableFuture.completedFuture(result);
+
+        // Stale and missing projects are refreshed together so they share one batched lookup
+        CompletableFuture<Map<String, UpdateVersion>> refreshed = refreshAll(toRefresh);
+        if (missing.isEmpty()) return CompletableFuture.completedFuture(result);
+        return refreshed.thenApply(fetched -> {
+            for (String projectId : missing) {
+                result.put(projectId, fetched.get(projectId));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Refreshes every project that is not fresh and waits for the result, falling back to the
+     * last known version where a refresh fails. Whether a refresh failed can be told from
+     * {@link #getCached} afterwards, since only successful refreshes make an entry fresh.
+     */
+    public CompletableFuture<Map<String, UpdateVersion>> revalidate(Collection<String> projectIds) {
+        Map<String, UpdateVersion> result = new HashMap<>();
+        List<String> toRefresh = new ArrayList<>();
+        for (String projectId : projectIds) {
+            Resolution cached = getCached(projectId);
+            if (cached.freshness() != Resolution.Freshness.FRESH) {
+                toRefresh.add(projectId);
+            }
+            result.put(projectId, cached.version());
+        }
+        if (toRefresh.isEmpty()) return CompletableFuture.completedFuture(result);
+
+        return refreshAll(toRefresh).thenApply(fetched -> {
+            fetched.forEach((projectId, version) -> {
+                if (version != null) result.put(projectId, version);
+            });
+            return result;
+        });
+    }
+
+    /**
+     * Resolves a project, answering from the local store whenever it is allowed to.
+     */
+    public CompletableFuture<Resolution> resolve(String projectId) {
+        Resolution cached = getCached(projectId);
+        switch (cached.freshness()) {
+            case FRESH:
+                return CompletableFuture.completedFuture(cached);
+            case STALE:
+                refresh(projectId);
+                return CompletableFuture.completedFuture(cached);
+            default:
+                return refresh(projectId).thenApply(version -> {
+                    Resolution current = getCached(projectId);
+                    return version != null ? current : Resolution.MISSING;
+                });
+        }
+    }
+
+    /**
+     * Returns what is known about a project without any I/O beyond the first lazy load.
+     */
+    public Resolution getCached(String projectId) {
+        Entry entry = entries().get(projectId);
+        if (entry == null || entry.version == null) return Resolution.MISSING;
+
+        long age = System.currentTimeMillis() - entry.fetchedAt;
+        if (age < config.getMetadataTtlMinutes() * 60_000L) {
+            return new Resolution(entry.version, Resolution.Freshness.FRESH, entry.fetchedAt);
+        }
+        if (age < config.getMetadataMaxAgeHours() * 3_600_000L) {
+            return new Resolution(entry.version, Resolution.Freshness.STALE, entry.fetchedAt);
+        }
+        return Resolution.MISSING;
+    }
+
+    /**
+     * Marks every last known version stale, e.g. after the settings that chose them changed.
+     * They are still served while the next check refreshes them.
+     */
+    public void expire() {
+        long staleAt = System.currentTimeMillis() - config.getMetadataTtlMinutes() * 60_000L;
+        boolean changed = false;
+        for (Entry entry : entries().values()) {
+            if (entry.fetchedAt > staleAt) {
+                entry.fetchedAt = staleAt;
+                changed = true;
+            }
+        }
+        if (changed) save();
+    }
+
+    private CompletableFuture<UpdateVersion> refresh(String projectId) {
+        CompletableFuture<UpdateVersion> promise = new CompletableFuture<>();
+        CompletableFuture<UpdateVersion> existing = inFlight.putIfAbsent(projectId, promise);
+        if (existing != null) return existing;
+
+        delegate.getLatestVersion(projectId).whenComplete((version, error) -> {
+            record(projectId, version, error);
+            inFlight.remove(projectId, promise);
+            promise.complete(version);
+        });
+        return promise;
+    }
+
+    private CompletableFuture<Map<String, UpdateVersion>> refreshAll(List<String> projectIds) {
+        Map<String, CompletableFuture<UpdateVersion>> promises = new HashMap<>();
+        Map<String, CompletableFuture<UpdateVersion>> owned = new HashMap<>();
+        for (String projectId : projectIds) {
+            CompletableFuture<UpdateVersion> promise = new CompletableFuture<>();
+            CompletableFuture<UpdateVersion> existing = inFlight.putIfAbsent(projectId, promise);
+            if (existing != null) {
+                promises.put(projectId, existing);
+            } else {
+                promises.put(projectId, promise);
+                owned.put(projectId, promise);
+            }
+        }
+
+        if (!owned.isEmpty()) {
+            delegate.getLatestVersions(owned.keySet()).whenComplete((versions, error) -> {
+                owned.forEach((projectId, promise) -> {
+                    UpdateVersion version = versions != null ? versions.get(projectId) : null;
+                    record(projectId, version, error);
+                    inFlight.remove(projectId, promise);
+                    promise.complete(version);
+                });
+            });
+        }
+
+        return CompletableFuture.allOf(promises.values().toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            Map<String, UpdateVersion> result = new HashMap<>();
+            promises.forEach((projectId, promise) -> result.put(projectId, promise.join()));
+            return result;
+        });
+    }
+
+    private void record(String projectId, UpdateVersion version, Throwable error) {
+        if (version != null) {
+            Entry entry = new Entry();
+            entry.version = version;
+            entry.fetchedAt = System.currentTimeMillis();
+            entries().put(projectId, entry);
+            save();
+        } else if (config.isDebug()) {
+            platform.info("Refreshing " + projectId + " failed, keeping last known version"
+                    + (error != null ? ": " + error.getMessage() : ""));
+        }
+    }
+
+    private synchronized void save() {
+        StoreFile data = new StoreFile();
+        data.version = FORMAT_VERSION;
+        data.entries = entries();
+        try {
+            AtomicFiles.writeString(storeFile, gson.toJson(data));
+        } catch (IOException e) {
+            platform.warn("Failed to save last known versions: " + e.getMessage());
+        }
+    }
+
+    private Map<String, Entry> entries() {
+        Map<String, Entry> map = entries;
+        if (map == null) {
+            synchronized (this) {
+                map = entries;
+                if (map == null) {
+                    map = load();
+                    entries = map;
+                }
+            }
+        }
+        return map;
+    }
+
+    private Map<String, Entry> load() {
+        Map<String, Entry> map = new ConcurrentHashMap<>();
+        try {
+            StoreFile data = gson.fromJson(Files.readString(storeFile, StandardCharsets.UTF_8), StoreFile.class);
+            if (data != null && data.version == FORMAT_VERSION && data.entries != null) {
+                data.entries.forEach((project, entry) -> {
+                    if (entry != null && entry.version != null) map.put(project, entry);
+                });
+            }
+        } catch (NoSuchFileException ignored) {
+        } catch (IOException | JsonParseException e) {
+            platform.warn("Last known versions are unreadable, starting fresh: " + e.getMessage());
+        }
+        return map;
+    }
+
+    private static class StoreFile {
+        int version;
+        Map<String, Entry> entries;
+    }
+
+    private static class Entry {
+        UpdateVersion version;
+        long fetchedAt;
+    }
+}
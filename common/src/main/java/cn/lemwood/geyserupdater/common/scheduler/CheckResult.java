@@ -0,0 +1,9 @@
+package cn.lemwood.geyserupdater.common.scheduler;
+
+/**
+ * Summary of one update check run.
+ * @param failed projects whose latest version could not be resolved or whose download failed
+ * @param deferred projects with an update that was not downloaded because no maintenance window was open
+ */
+public record CheckResult(int failed, int deferred) {
+}
@@ -0,0 +1,161 @@
+package cn.lemwood.geyserupdater.common.scheduler;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
+
+/**
+ * A recurring time window, given as a five field cron expression
+ * ({@code minute hour day-of-month month day-of-week}) for the start and a duration.
+ * <p>
+ * Fields accept {@code *}, single values, ranges ({@code 1-5}), lists ({@code 1,3})
+ * and steps ({@code *}{@code /15}, {@code 0-30/10}). Day of week is 0-7 with both 0 and 7
+ * meaning Sunday. As in cron, when both day fields are restricted either may match.
+ */
+public class MaintenanceWindow {
+    private static final int SEARCH_LIMIT_DAYS = 366;
+
+    private final String expression;
+    private final Duration duration;
+    private final BitSet minutes;
+    private final BitSet hours;
+    private final BitSet daysOfMonth;
+    private final BitSet months;
+    private final BitSet daysOfWeek;
+    private final boolean dayOfMonthRestricted;
+    private final boolean dayOfWeekRestricted;
+
+    public MaintenanceWindow(String expression, Duration duration) {
+        String[] fields = expression.trim().split("\\s+");
+        if (fields.length != 5) {
+            throw new IllegalArgumentException("Expected 5 cron fields but got " + fields.length + ": " + expression);
+        }
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("Window duration must be positive: " + expression);
+        }
+        this.expression = expression.trim();
+        this.duration = duration;
+        this.minutes = parseField(fields[0], 0, 59);
+        this.hours = parseField(fields[1], 0, 23);
+        this.daysOfMonth = parseField(fields[2], 1, 31);
+        this.months = parseField(fields[3], 1, 12);
+        this.daysOfWeek = parseField(fields[4], 0, 7);
+        if (daysOfWeek.get(7)) daysOfWeek.set(0);
+        this.dayOfMonthRestricted = !fields[2].equals("*");
+        this.dayOfWeekRestricted = !fields[4].equals("*");
+    }
+
+    /**
+     * @return true if {@code time} falls inside an occurrence of this window
+     */
+    public boolean contains(ZonedDateTime time) {
+        ZonedDateTime minute = time.truncatedTo(ChronoUnit.MINUTES);
+        long span = duration.toMinutes();
+        for (long back = 0; back < span; back++) {
+            if (matches(minute.minusMinutes(back))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the next start of this window strictly after {@code time}, or null if there is
+     * none within a year (e.g. an expression for February 30th)
+     */
+    public ZonedDateTime nextStart(ZonedDateTime time) {
+        ZonedDateTime candidate = time.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+        ZonedDateTime limit = candidate.plusDays(SEARCH_LIMIT_DAYS);
+        while (candidate.isBefore(limit)) {
+            if (!months.get(candidate.getMonthValue())) {
+                candidate = candidate.withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS).plusMonths(1);
+            } else if (!matchesDay(candidate)) {
+                candidate = candidate.truncatedTo(ChronoUnit.DAYS).plusDays(1);
+            } else if (!hours.get(candidate.getHour())) {
+                candidate = candidate.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+            } else if (!minutes.get(candidate.getMinute())) {
+                candidate = candidate.plusMinutes(1);
+            } else {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof MaintenanceWindow other && expression.equals(other.expression) && duration.equals(other.duration);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * expression.hashCode() + duration.hashCode();
+    }
+
+    private boolean matches(ZonedDateTime minute) {
+        return minutes.get(minute.getMinute())
+                && hours.get(minute.getHour())
+                && months.get(minute.getMonthValue())
+                && matchesDay(minute);
+    }
+
+    private boolean matchesDay(ZonedDateTime time) {
+        boolean dom = daysOfMonth.get(time.getDayOfMonth());
+        boolean dow = daysOfWeek.get(time.getDayOfWeek().getValue() % 7);
+        if (dayOfMonthRestricted && dayOfWeekRestricted) return dom || dow;
+        return dom && dow;
+    }
+
+    private static BitSet parseField(String field, int min, int max) {
+        BitSet bits = new BitSet(max + 1);
+        for (String part : field.split(",")) {
+            int step = 1;
+            String range = part;
+            int slash = part.indexOf('/');
+            if (slash >= 0) {
+                step = parseNumber(part.substring(slash + 1), 1, Integer.MAX_VALUE, field);
+                range = part.substring(0, slash);
+            }
+            int from;
+            int to;
+            if (range.equals("*")) {
+                from = min;
+                to = max;
+            } else if (range.contains("-")) {
+                String[] bounds = range.split("-", 2);
+                from = parseNumber(bounds[0], min, max, field);
+                to = parseNumber(bounds[1], min, max, field);
+            } else {
+                from = parseNumber(range, min, max, field);
+                to = slash >= 0 ? max : from;
+            }
+            if (from > to) {
+                throw new IllegalArgumentException("Invalid range in cron field: " + field);
+            }
+            for (int value = from; value <= to; value += step) {
+                bits.set(value);
+            }
+        }
+        return bits;
+    }
+
+    private static int parseNumber(String text, int min, int max, String field) {
+        try {
+            int value = Integer.parseInt(text);
+            if (value < min || value > max) {
+                throw new IllegalArgumentException("Value " + value + " out of range " + min + "-" + max + " in cron field: " + field);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cron field: " + field);
+        }
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    @Override
+    public String toString() {
+        return expression + " (" + duration.toMinutes() + " min)";
+    }
+}
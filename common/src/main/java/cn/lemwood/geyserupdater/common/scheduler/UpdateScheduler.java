@@ -0,0 +1,201 @@
+package cn.lemwood.geyserupdater.common.scheduler;
+
+import cn.lemwood.geyserupdater.common.config.ConfigManager;
+import cn.lemwood.geyserupdater.common.platform.PlatformAdapter;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs update checks in the background for as long as the server is up.
+ * <p>
+ * A single daemon thread only keeps time; every check is handed to
+ * {@link PlatformAdapter#runAsync} so it runs on the platform's own async facilities.
+ * The next check is only scheduled once the previous one has finished, so runs never overlap.
+ * <ul>
+ *     <li>Each interval is shifted by a random jitter so servers started together spread out.</li>
+ *     <li>Failed checks are retried with exponential backoff instead of waiting a full interval.</li>
+ *     <li>Outside the configured maintenance windows updates are reported but not downloaded,
+ *     and the next check is moved to the start of the next window.</li>
+ * </ul>
+ */
+public class UpdateScheduler {
+    private static final Duration MIN_DELAY = Duration.ofMinutes(1);
+
+    /**
+     * Runs one check.
+     */
+    @FunctionalInterface
+    public interface Check {
+        /**
+         * @param allowDownload false to only report updates
+         * @param revalidate true to wait for fresh metadata rather than answering from the last known versions
+         */
+        CompletableFuture<CheckResult> run(boolean allowDownload, boolean revalidate);
+    }
+
+    private final PlatformAdapter platform;
+    private final ConfigManager config;
+    private final Check check;
+    private ScheduledExecutorService timer;
+    private ScheduledFuture<?> pending;
+    private boolean running;
+    private volatile ZonedDateTime nextCheck;
+    private int failures;
+    // Bumped on every start/stop so a check that outlives a restart does not schedule a second chain
+    private int generation;
+
+    public UpdateScheduler(PlatformAdapter platform, ConfigManager config, Check check) {
+        this.platform = platform;
+        this.config = config;
+        this.check = check;
+    }
+
+    /**
+     * Runs the startup check right away and keeps checking periodically if enabled.
+     */
+    public synchronized void start() {
+        if (timer != null) return;
+        failures = 0;
+        int current = ++generation;
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "GeyserUpdater-Scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // The startup check answers from the last known versions, so it never waits on the network
+        platform.runAsync(() -> runCheck(current, false));
+    }
+
+    /**
+     * Cancels the pending check. A check that is already running is left to finish.
+     */
+    public synchronized void stop() {
+        if (timer == null) return;
+        timer.shutdownNow();
+        timer = null;
+        pending = null;
+        running = false;
+        generation++;
+        nextCheck = null;
+    }
+
+    /**
+     * Picks up changed scheduler settings. Maintenance windows apply right away and a pending
+     * check is moved to a fresh interval; a check that is running schedules the next one with
+     * the new settings when it finishes.
+     */
+    public synchronized void reschedule() {
+        if (timer == null || running) return;
+        if (pending != null) pending.cancel(false);
+        failures = 0;
+        scheduleNext(++generation, nextDelay(new CheckResult(0, 0), null));
+    }
+
+    /**
+     * @return when the next background check is due, or null if none is scheduled
+     */
+    public ZonedDateTime getNextCheck() {
+        return nextCheck;
+    }
+
+    /**
+     * @return the start of the next maintenance window, or null if downloads are not restricted
+     */
+    public ZonedDateTime getNextWindowStart(ZonedDateTime now) {
+        ZonedDateTime earliest = null;
+        for (MaintenanceWindow window : config.getMaintenanceWindows()) {
+            ZonedDateTime start = window.nextStart(now);
+            if (start != null && (earliest == null || start.isBefore(earliest))) {
+                earliest = start;
+            }
+        }
+        return earliest;
+    }
+
+    public boolean isDownloadAllowed(ZonedDateTime now) {
+        List<MaintenanceWindow> current = config.getMaintenanceWindows();
+        if (current.isEmpty()) return true;
+        for (MaintenanceWindow window : current) {
+            if (window.contains(now)) return true;
+        }
+        return false;
+    }
+
+    private void runCheck(int runGeneration, boolean revalidate) {
+        synchronized (this) {
+            // Rescheduled while this run was queued
+            if (runGeneration != generation) return;
+            running = true;
+        }
+        CompletableFuture<CheckResult> result;
+        try {
+            result = check.run(isDownloadAllowed(ZonedDateTime.now()), revalidate);
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((outcome, error) -> scheduleNext(runGeneration, nextDelay(outcome, error)));
+    }
+
+    private synchronized void scheduleNext(int runGeneration, Duration delay) {
+        if (runGeneration != generation) return;
+        running = false;
+        pending = null;
+        if (timer == null || delay == null) {
+            nextCheck = null;
+            return;
+        }
+        nextCheck = ZonedDateTime.now().plus(delay);
+        pending = timer.schedule(() -> platform.runAsync(() -> runCheck(runGeneration, true)), delay.toMillis(), TimeUnit.MILLISECONDS);
+        if (config.isDebug()) {
+            platform.info("Next update check in " + delay.toMinutes() + " minutes");
+        }
+    }
+
+    private synchronized Duration nextDelay(CheckResult outcome, Throwable error) {
+        if (!config.isSchedulerEnabled()) return null;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        if (error != null || outcome.failed() > 0) {
+            failures++;
+            long initial = Math.max(1, config.getBackoffInitialMinutes());
+            long max = Math.max(initial, config.getBackoffMaxMinutes());
+            long backoff = Math.min(max, initial << Math.min(failures - 1, 20)) * 60_000L;
+            // Keep at least half of the backoff so retries from many servers still spread out
+            long millis = backoff / 2 + random.nextLong(backoff / 2 + 1);
+            if (config.isDebug()) {
+                platform.info("Update check failed " + failures + " time(s) in a row, retrying with backoff");
+            }
+            return atLeastMinimum(Duration.ofMillis(millis));
+        }
+
+        failures = 0;
+        long jitter = Math.max(0, config.getCheckJitterMinutes()) * 60_000L;
+        long millis = Math.max(1, config.getCheckIntervalMinutes()) * 60_000L
+                + (jitter > 0 ? random.nextLong(-jitter, jitter + 1) : 0);
+        Duration delay = Duration.ofMillis(millis);
+
+        if (outcome.deferred() > 0) {
+            // Come back when the next window opens instead of waiting a full interval
+            ZonedDateTime now = ZonedDateTime.now();
+            ZonedDateTime open = getNextWindowStart(now);
+            if (open != null) {
+                Duration untilOpen = Duration.between(now, open)
+                        .plusMillis(jitter > 0 ? random.nextLong(jitter + 1) : 0);
+                if (untilOpen.compareTo(delay) < 0) delay = untilOpen;
+            }
+        }
+        return atLeastMinimum(delay);
+    }
+
+    private static Duration atLeastMinimum(Duration delay) {
+        return delay.compareTo(MIN_DELAY) < 0 ? MIN_DELAY : delay;
+    }
+}
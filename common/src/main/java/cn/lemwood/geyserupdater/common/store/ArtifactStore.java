@@ -0,0 +1,330 @@
+package cn.lemwood.geyserupdater.common.store;
+
+import cn.lemwood.geyserupdater.common.api.UpdateClient;
+import cn.lemwood.geyserupdater.common.config.ConfigManager;
+import cn.lemwood.geyserupdater.common.download.ArtifactDownloader;
+import cn.lemwood.geyserupdater.common.download.StagedArtifact;
+import cn.lemwood.geyserupdater.common.hash.FileHasher;
+import cn.lemwood.geyserupdater.common.hash.HashAlgorithm;
+import cn.lemwood.geyserupdater.common.platform.PlatformAdapter;
+import cn.lemwood.geyserupdater.common.util.AtomicFiles;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Host-wide content-addressable store for downloaded artifacts, keyed by SHA-256.
+ * <p>
+ * Every verified download is added once under {@code objects/<aa>/<sha256>}. Installing an
+ * artifact that is already stored creates a hard link to that object, so the bytes exist on disk once
+ * no matter how many server folders use them and installing is a metadata operation. A copy is
+ * made instead when the store is on a different filesystem, or when the platform may overwrite
+ * installed jars in place, which would write through the link into every server sharing it.
+ * Objects are made read-only for the same reason.
+ * <p>
+ * The index records the installed paths referencing each object. Objects without live
+ * references are evicted least recently used first whenever the store grows past its size limit.
+ * The index is shared by all processes on the host and only changed while holding a file lock.
+ */
+public class ArtifactStore {
+    private static final int FORMAT_VERSION = 1;
+
+    private final PlatformAdapter platform;
+    private final ConfigManager config;
+    private final FileHasher hasher;
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    public ArtifactStore(PlatformAdapter platform, ConfigManager config, FileHasher hasher) {
+        this.platform = platform;
+        this.config = config;
+        this.hasher = hasher;
+    }
+
+    public boolean isEnabled() {
+        return config.isArtifactStoreEnabled();
+    }
+
+    /**
+     * Stages the artifact from the store if it is there, otherwise runs {@code download} and
+     * adds the verified result to the store. Falls through to {@code download} when disabled.
+     */
+    public CompletableFuture<StagedArtifact> fetch(UpdateClient.UpdateVersion version, Path targetDir,
+                                                  Supplier<CompletableFuture<StagedArtifact>> download) {
+        if (!isEnabled()) return download.get();
+        StagedArtifact stored = stage(version, targetDir);
+        if (stored != null) {
+            if (config.isDebug()) {
+                platform.info("Using " + version.filename + " from the artifact store");
+            }
+            return CompletableFuture.completedFuture(stored);
+        }
+        return download.get().thenCompose(staged -> add(staged).thenApply(v -> staged));
+    }
+
+    /**
+     * Links the stored object for {@code version} into the staging location next to its target.
+     * @return the staged artifact, or null if the store does not have it
+     */
+    public StagedArtifact stage(UpdateClient.UpdateVersion version, Path targetDir) {
+        HashAlgorithm algorithm = version.getPreferredHashAlgorithm();
+        if (algorithm == null) return null;
+        String hash = version.getHash(algorithm).toLowerCase(Locale.ROOT);
+        try {
+            return withIndex(index -> {
+                String sha256 = index.resolve(algorithm, hash);
+                Entry entry = sha256 != null ? index.objects.get(sha256) : null;
+                if (entry == null) return null;
+                Path object = objectPath(sha256);
+                if (!Files.isRegularFile(object) || Files.size(object) != entry.size) {
+                    index.remove(sha256);
+                    return null;
+                }
+                Path staging = targetDir.resolve(version.filename + ArtifactDownloader.STAGING_SUFFIX);
+                Files.createDirectories(targetDir);
+                Files.deleteIfExists(staging);
+                // Objects stored before they were made read-only
+                makeReadOnly(object);
+                install(object, staging);
+                entry.lastUsed = System.currentTimeMillis();
+                return new StagedArtifact(staging, entry.size, algorithm, hash);
+            });
+        } catch (IOException e) {
+            platform.warn("Artifact store lookup failed, downloading instead: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Adds a verified staged artifact to the store, linking it rather than copying where possible.
+     * Failures are only logged since the store is an optimisation.
+     */
+    public CompletableFuture<Void> add(StagedArtifact staged) {
+        CompletableFuture<String> sha256 = staged.algorithm() == HashAlgorithm.SHA256
+                ? CompletableFuture.completedFuture(staged.hash())
+                : hasher.hashAsync(staged.file(), HashAlgorithm.SHA256);
+        return sha256.thenAccept(hash -> {
+            String key = hash.toLowerCase(Locale.ROOT);
+            try {
+                withIndex(index -> {
+                    Path object = objectPath(key);
+                    if (!Files.isRegularFile(object)) {
+                        Files.createDirectories(object.getParent());
+                        try {
+                            install(staged.file(), object);
+                            makeReadOnly(object);
+                        } catch (FileAlreadyExistsException ignored) {
+                            // Added by another process in the meantime
+                        }
+                    }
+                    Entry entry = index.objects.computeIfAbsent(key, k -> new Entry());
+                    entry.size = Files.size(object);
+                    entry.lastUsed = System.currentTimeMillis();
+                    index.aliases.put(staged.algorithm().getKey() + ":" + staged.hash().toLowerCase(Locale.ROOT), key);
+                    collectGarbage(index, key);
+                    return null;
+                });
+            } catch (IOException e) {
+                platform.warn("Failed to add " + staged.file().getFileName() + " to the artifact store: " + e.getMessage());
+            }
+        }).exceptionally(e -> {
+            platform.warn("Failed to add " + staged.file().getFileName() + " to the artifact store: " + e.getMessage());
+            return null;
+        });
+    }
+
+    /**
+     * Records that {@code installed} now holds the stored object for this artifact, keeping the
+     * object out of garbage collection for as long as the file stays in place.
+     */
+    public void addReference(HashAlgorithm algorithm, String hash, Path installed) {
+        if (!isEnabled()) return;
+        try {
+            withIndex(index -> {
+                String sha256 = index.resolve(algorithm, hash.toLowerCase(Locale.ROOT));
+                Entry entry = sha256 != null ? index.objects.get(sha256) : null;
+                if (entry != null) {
+                    entry.refs.add(installed.toAbsolutePath().normalize().toString());
+                }
+                return null;
+            });
+        } catch (IOException e) {
+            platform.warn("Failed to record artifact store reference: " + e.getMessage());
+        }
+    }
+
+    /**
+     * When the store is over its size limit, drops references to files that were removed or
+     * replaced, then evicts unreferenced objects, least recently used first, until it fits.
+     * {@code keep} is the object just added, whose reference is only recorded once it has been
+     * installed.
+     */
+    private void collectGarbage(Index index, String keep) throws IOException {
+        long limit = config.getArtifactStoreMaxSizeMb() * 1024L * 1024L;
+        long total = 0;
+        for (String sha256 : new ArrayList<>(index.objects.keySet())) {
+            if (!Files.isRegularFile(objectPath(sha256))) {
+                index.remove(sha256);
+                continue;
+            }
+            total += index.objects.get(sha256).size;
+        }
+        if (total <= limit) return;
+
+        // Only checked when something has to go, since a copied file has to be hashed
+        for (Map.Entry<String, Entry> e : index.objects.entrySet()) {
+            Path object = objectPath(e.getKey());
+            e.getValue().refs.removeIf(ref -> !isStillInstalled(Path.of(ref), object, e.getKey(), e.getValue().size));
+        }
+
+        List<Map.Entry<String, Entry>> unreferenced = new ArrayList<>();
+        for (Map.Entry<String, Entry> e : index.objects.entrySet()) {
+            if (e.getValue().refs.isEmpty() && !e.getKey().equals(keep)) unreferenced.add(e);
+        }
+        unreferenced.sort(Comparator.comparingLong(e -> e.getValue().lastUsed));
+        for (Map.Entry<String, Entry> e : unreferenced) {
+            if (total <= limit) break;
+            Files.deleteIfExists(objectPath(e.getKey()));
+            total -= e.getValue().size;
+            index.remove(e.getKey());
+            if (config.isDebug()) {
+                platform.info("Evicted " + e.getKey() + " from the artifact store");
+            }
+        }
+    }
+
+    /**
+     * @return true if {@code installed} is still a link to {@code object} or a copy of it
+     */
+    private boolean isStillInstalled(Path installed, Path object, String sha256, long size) {
+        try {
+            if (!Files.isRegularFile(installed)) return false;
+            if (Files.isSameFile(installed, object)) return true;
+            // A copy has no identity to compare, so only its content can tell
+            return Files.size(installed) == size && sha256.equalsIgnoreCase(hasher.hash(installed, HashAlgorithm.SHA256));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Hard-links {@code existing} as {@code target} where that is safe, and copies it otherwise.
+     */
+    private void install(Path existing, Path target) throws IOException {
+        if (platform.replacesJarsByRename()) {
+            try {
+                Files.createLink(target, existing);
+                return;
+            } catch (FileAlreadyExistsException e) {
+                throw e;
+            } catch (UnsupportedOperationException | IOException e) {
+                // Different filesystem or no hard link support, fall back to a copy
+            }
+        } else if (Files.exists(target)) {
+            throw new FileAlreadyExistsException(target.toString());
+        }
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.copy(existing, temp, StandardCopyOption.REPLACE_EXISTING);
+        AtomicFiles.move(temp, target);
+    }
+
+    /**
+     * Removes write permission from a stored object, and with it from every hard link to it, so
+     * a jar overwritten in place fails instead of changing it for every server. Deleting it or
+     * renaming a new jar over a link is unaffected. A no-op where POSIX permissions don't exist.
+     */
+    private static void makeReadOnly(Path object) {
+        PosixFileAttributeView view = Files.getFileAttributeView(object, PosixFileAttributeView.class);
+        if (view == null) return;
+        try {
+            view.setPermissions(EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.GROUP_READ,
+                    PosixFilePermission.OTHERS_READ));
+        } catch (IOException ignored) {
+        }
+    }
+
+    private Path objectPath(String sha256) {
+        return config.getArtifactStoreDirectory().resolve("objects").resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    private interface IndexUpdate<T> {
+        T apply(Index index) throws IOException;
+    }
+
+    /**
+     * Applies {@code update} to the index while holding the store lock, so concurrent
+     * processes never lose each other's changes.
+     */
+    private synchronized <T> T withIndex(IndexUpdate<T> update) throws IOException {
+        Path root = config.getArtifactStoreDirectory();
+        Files.createDirectories(root);
+        Path indexFile = root.resolve("index.json");
+        try (FileChannel lock = FileChannel.open(root.resolve("index.lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // Released when the channel is closed
+            lock.lock();
+            Index index = readIndex(indexFile);
+            T result = update.apply(index);
+            AtomicFiles.writeString(indexFile, gson.toJson(index));
+            return result;
+        }
+    }
+
+    private Index readIndex(Path indexFile) {
+        try {
+            Index index = gson.fromJson(Files.readString(indexFile, StandardCharsets.UTF_8), Index.class);
+            if (index != null && index.version == FORMAT_VERSION && index.objects != null && index.aliases != null) {
+                return index;
+            }
+        } catch (NoSuchFileException ignored) {
+        } catch (IOException | JsonParseException e) {
+            platform.warn("Artifact store index is unreadable, starting fresh: " + e.getMessage());
+        }
+        return new Index();
+    }
+
+    private static class Index {
+        int version = FORMAT_VERSION;
+        Map<String, Entry> objects = new HashMap<>();
+        // "<algorithm>:<hash>" to SHA-256, for sources that advertise another checksum
+        Map<String, String> aliases = new HashMap<>();
+
+        String resolve(HashAlgorithm algorithm, String hash) {
+            if (algorithm == HashAlgorithm.SHA256) return objects.containsKey(hash) ? hash : null;
+            return aliases.get(algorithm.getKey() + ":" + hash);
+        }
+
+        void remove(String sha256) {
+            objects.remove(sha256);
+            aliases.values().removeIf(sha256::equals);
+        }
+    }
+
+    private static class Entry {
+        long size;
+        long lastUsed;
+        Set<String> refs = new LinkedHashSet<>();
+    }
+}
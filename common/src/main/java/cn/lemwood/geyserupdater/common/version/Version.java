@@ -0,0 +1,161 @@
+package cn.lemwood.geyserupdater.common.version;
+
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A version string parsed into a form that can be ordered.
+ * <p>
+ * Understands SemVer and dotted numeric versions, Maven-style qualifiers
+ * ({@code alpha < beta < milestone < rc < SNAPSHOT < release}), {@code -b123} and similar build
+ * suffixes, and the bare build numbers of the Geyser Downloads API. Unknown qualifiers and
+ * {@code +metadata} rank like a release, so cosmetic differences never count as newer.
+ * <p>
+ * Parsed forms are cached, since the same few strings are compared on every check.
+ */
+public final class Version {
+    private static final int MAX_CACHED = 1024;
+    private static final Map<String, Version> CACHE = new ConcurrentHashMap<>();
+
+    private static final Pattern BUILD_ONLY = Pattern.compile("\\d+");
+    private static final Pattern BUILD = Pattern.compile("(?i)(?:^|[-+._\\s(#])b(?:uild)?[\\s.#-]?(\\d+)\\)?");
+    private static final Pattern NUMBERS = Pattern.compile("^\\d+(?:\\.\\d+)*");
+    private static final Pattern QUALIFIER = Pattern.compile("^[-._]?([a-zA-Z]*)[-._]?(\\d*)");
+    private static final int RELEASE = 6;
+
+    private final int[] numbers;
+    private final int rank;
+    private final int qualifierNumber;
+    private final int build;
+
+    private Version(int[] numbers, int rank, int qualifierNumber, int build) {
+        this.numbers = numbers;
+        this.rank = rank;
+        this.qualifierNumber = qualifierNumber;
+        this.build = build;
+    }
+
+    /**
+     * @return the parsed form of {@code version}, from the cache if it was parsed before
+     */
+    public static Version parse(String version) {
+        Version cached = CACHE.get(version);
+        if (cached != null) return cached;
+        Version parsed = doParse(version);
+        if (CACHE.size() >= MAX_CACHED) CACHE.clear();
+        CACHE.put(version, parsed);
+        return parsed;
+    }
+
+    private static Version doParse(String version) {
+        String s = version.trim();
+        if (s.length() > 1 && (s.charAt(0) == 'v' || s.charAt(0) == 'V') && Character.isDigit(s.charAt(1))) {
+            s = s.substring(1);
+        }
+        if (BUILD_ONLY.matcher(s).matches()) {
+            return new Version(new int[0], RELEASE, 0, parseInt(s));
+        }
+
+        int build = -1;
+        Matcher buildMatcher = BUILD.matcher(s);
+        if (buildMatcher.find()) {
+            build = parseInt(buildMatcher.group(1));
+            s = s.substring(0, buildMatcher.start()) + s.substring(buildMatcher.end());
+        }
+        int plus = s.indexOf('+');
+        if (plus >= 0) s = s.substring(0, plus);
+
+        Matcher numberMatcher = NUMBERS.matcher(s);
+        int[] numbers;
+        if (numberMatcher.find()) {
+            String[] parts = numberMatcher.group().split("\\.");
+            numbers = new int[parts.length];
+            for (int i = 0; i < parts.length; i++) numbers[i] = parseInt(parts[i]);
+            s = s.substring(numberMatcher.end());
+        } else {
+            numbers = new int[0];
+        }
+
+        Matcher qualifier = QUALIFIER.matcher(s);
+        int rank = RELEASE;
+        int qualifierNumber = 0;
+        if (qualifier.find()) {
+            rank = rankOf(qualifier.group(1).toLowerCase());
+            qualifierNumber = qualifier.group(2).isEmpty() ? 0 : parseInt(qualifier.group(2));
+        }
+        return new Version(numbers, rank, qualifierNumber, build);
+    }
+
+    private static int rankOf(String qualifier) {
+        return switch (qualifier) {
+            case "alpha", "a" -> 1;
+            case "beta", "b" -> 2;
+            case "milestone", "m" -> 3;
+            case "rc", "cr", "pre", "preview" -> 4;
+            case "snapshot" -> 5;
+            default -> RELEASE;
+        };
+    }
+
+    private static int parseInt(String digits) {
+        try {
+            return Integer.parseInt(digits);
+        } catch (NumberFormatException e) {
+            // Longer than an int; no real version component is
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * @return a copy of this version with {@code build} as its build number, e.g. one read from
+     *         the jar separately; this version if {@code build} is negative
+     */
+    public Version withBuild(int build) {
+        return build < 0 ? this : new Version(numbers, rank, qualifierNumber, build);
+    }
+
+    public int getBuild() {
+        return build;
+    }
+
+    /**
+     * Orders two versions by their numbers, then by build number when both sides have one,
+     * since a Geyser build is more telling than a SNAPSHOT label; only without builds on both
+     * sides is the qualifier compared.
+     * @return negative, zero or positive like {@link Comparable#compareTo}, or empty if the two
+     *         can't be ordered, e.g. a bare build number against a version without a build
+     */
+    public static OptionalInt compare(Version a, Version b) {
+        boolean builds = a.build >= 0 && b.build >= 0;
+        if (a.numbers.length == 0 || b.numbers.length == 0) {
+            if (builds) return OptionalInt.of(Integer.compare(a.build, b.build));
+            return a.numbers.length == b.numbers.length ? OptionalInt.of(0) : OptionalInt.empty();
+        }
+        int length = Math.max(a.numbers.length, b.numbers.length);
+        for (int i = 0; i < length; i++) {
+            int x = i < a.numbers.length ? a.numbers[i] : 0;
+            int y = i < b.numbers.length ? b.numbers[i] : 0;
+            if (x != y) return OptionalInt.of(Integer.compare(x, y));
+        }
+        // Same numbers and same build is the same artifact, whatever its label says
+        if (builds) return OptionalInt.of(Integer.compare(a.build, b.build));
+        if (a.rank != b.rank) return OptionalInt.of(Integer.compare(a.rank, b.rank));
+        return OptionalInt.of(Integer.compare(a.qualifierNumber, b.qualifierNumber));
+    }
+
+    /**
+     * @return true if {@code remote} is strictly newer than {@code installed}, or if the two
+     *         can't be ordered, in which case the caller's checksum comparison decides
+     */
+    public static boolean isNewer(Version remote, Version installed) {
+        OptionalInt order = compare(remote, installed);
+        return order.isEmpty() || order.getAsInt() > 0;
+    }
+
+    public static boolean isNewer(String remote, String installed) {
+        return isNewer(parse(remote), parse(installed));
+    }
+}
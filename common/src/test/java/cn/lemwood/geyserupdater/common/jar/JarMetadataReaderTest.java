@@ -0,0 +1,132 @@
+package cn.lemwood.geyserupdater.common.jar;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class JarMetadataReaderTest {
+    @TempDir
+    Path dir;
+
+    private Path jar(String name, Manifest manifest, Map<String, String> entries, boolean stored, String comment)
+            throws IOException {
+        Path jar = dir.resolve(name);
+        try (OutputStream out = Files.newOutputStream(jar);
+             JarOutputStream zip = manifest != null ? new JarOutputStream(out, manifest) : new JarOutputStream(out)) {
+            // Padding entries so the descriptors don't sit at the start of the central directory
+            for (int i = 0; i < 20; i++) {
+                zip.putNextEntry(new ZipEntry("com/example/Class" + i + ".class"));
+                zip.write(new byte[512 + i]);
+                zip.closeEntry();
+            }
+            for (Map.Entry<String, String> e : entries.entrySet()) {
+                byte[] data = e.getValue().getBytes(StandardCharsets.UTF_8);
+                ZipEntry entry = new ZipEntry(e.getKey());
+                if (stored) {
+                    CRC32 crc = new CRC32();
+                    crc.update(data);
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(data.length);
+                    entry.setCrc(crc.getValue());
+                }
+                zip.putNextEntry(entry);
+                zip.write(data);
+                zip.closeEntry();
+            }
+            if (comment != null) zip.setComment(comment);
+        }
+        return jar;
+    }
+
+    private Path jar(String name, Map<String, String> entries) throws IOException {
+        return jar(name, null, entries, false, null);
+    }
+
+    @Test
+    void readsPluginYmlAndGitBuildNumber() throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("plugin.yml", "name: Geyser-Spigot\nversion: '2.4.4-SNAPSHOT' # filtered\nmain: x.Y\n");
+        entries.put("git.properties", "#Generated\ngit.build.number=700\ngit.build.version=2.4.4-SNAPSHOT\n");
+
+        JarMetadataReader.JarMetadata metadata = JarMetadataReader.read(jar("geyser.jar", entries));
+
+        assertEquals(new JarMetadataReader.JarMetadata("2.4.4-SNAPSHOT", 700), metadata);
+    }
+
+    @Test
+    void readsStoredEntries() throws IOException {
+        Path jar = jar("stored.jar", null, Map.of("fabric.mod.json", "{\"id\":\"geyser\",\"version\":\"2.4.4-b12\"}"),
+                true, null);
+
+        assertEquals(new JarMetadataReader.JarMetadata("2.4.4-b12", 12), JarMetadataReader.read(jar));
+    }
+
+    @Test
+    void findsTheDirectoryBehindAnArchiveComment() throws IOException {
+        Path jar = jar("commented.jar", null, Map.of("extension.yml", "id: geyserextras\nversion: 1.3.0\n"),
+                false, "x".repeat(4000));
+
+        assertEquals(new JarMetadataReader.JarMetadata("1.3.0", -1), JarMetadataReader.read(jar));
+    }
+
+    @Test
+    void skipsUnfilteredPlaceholdersForTheManifest() throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.IMPLEMENTATION_VERSION, "2.1.0");
+        Path jar = jar("floodgate.jar", manifest, Map.of("plugin.yml", "version: ${project.version}\n"), false, null);
+
+        assertEquals(new JarMetadataReader.JarMetadata("2.1.0", -1), JarMetadataReader.read(jar));
+    }
+
+    @Test
+    void rereadsAJarThatChanged() throws IOException {
+        Path jar = jar("changing.jar", Map.of("plugin.yml", "version: 1.0.0\n"));
+        assertEquals("1.0.0", JarMetadataReader.read(jar).version());
+
+        Files.delete(jar);
+        jar("changing.jar", Map.of("plugin.yml", "version: 1.0.1-longer\n"));
+
+        assertEquals("1.0.1-longer", JarMetadataReader.read(jar).version());
+    }
+
+    @Test
+    void fileThatIsNoZipHasNoMetadata() throws IOException {
+        Path file = dir.resolve("broken.jar");
+        Files.writeString(file, "not a zip at all, just some text that is long enough");
+
+        assertEquals(new JarMetadataReader.JarMetadata(null, -1), JarMetadataReader.read(file));
+        assertNull(JarMetadataReader.read(dir.resolve("missing.jar")));
+    }
+
+    @Test
+    void readsTheManifestOfARealJar() throws Exception {
+        // Whatever jar JUnit itself was loaded from, written by a real build tool
+        Path real = Path.of(Test.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        assumeTrue(Files.isRegularFile(real));
+        String expected;
+        try (JarFile jarFile = new JarFile(real.toFile())) {
+            expected = jarFile.getManifest().getMainAttributes().getValue(Attributes.Name.IMPLEMENTATION_VERSION);
+        }
+        assumeTrue(expected != null);
+
+        assertEquals(expected, JarMetadataReader.read(real).version());
+    }
+}
@@ -0,0 +1,77 @@
+package cn.lemwood.geyserupdater.common.mirror;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheIndexTest {
+    private static final long NO_LIMIT = Long.MAX_VALUE;
+
+    @Test
+    void refetchingIdenticalContentKeepsTheBlob() {
+        CacheIndex index = new CacheIndex();
+        index.put("a.json", new CacheIndex.Cached("sha-a", 100), NO_LIMIT);
+
+        CacheIndex.Removed removed = index.put("a.json", new CacheIndex.Cached("sha-a", 100), NO_LIMIT);
+
+        assertEquals(List.of(), removed.blobs());
+        assertEquals(List.of(), removed.entries());
+        assertTrue(index.references("sha-a"));
+        assertEquals(100, index.bytes());
+    }
+
+    @Test
+    void changedContentReleasesTheOldBlob() {
+        CacheIndex index = new CacheIndex();
+        index.put("a.json", new CacheIndex.Cached("sha-old", 100), NO_LIMIT);
+
+        CacheIndex.Removed removed = index.put("a.json", new CacheIndex.Cached("sha-new", 40), NO_LIMIT);
+
+        assertEquals(List.of("sha-old"), removed.blobs());
+        assertFalse(index.references("sha-old"));
+        assertEquals(40, index.bytes());
+    }
+
+    @Test
+    void sharedBlobStaysWhileAnotherEntryUsesIt() {
+        CacheIndex index = new CacheIndex();
+        index.put("a.json", new CacheIndex.Cached("sha-shared", 100), NO_LIMIT);
+        index.put("b.json", new CacheIndex.Cached("sha-shared", 100), NO_LIMIT);
+
+        CacheIndex.Removed removed = index.put("a.json", new CacheIndex.Cached("sha-other", 10), NO_LIMIT);
+
+        assertEquals(List.of(), removed.blobs());
+        assertTrue(index.references("sha-shared"));
+        assertEquals(110, index.bytes());
+    }
+
+    @Test
+    void evictsLeastRecentlyServedFirst() {
+        CacheIndex index = new CacheIndex();
+        index.put("a.json", new CacheIndex.Cached("sha-a", 100), 250);
+        index.put("b.json", new CacheIndex.Cached("sha-b", 100), 250);
+        index.touch("a.json");
+
+        CacheIndex.Removed removed = index.put("c.json", new CacheIndex.Cached("sha-c", 100), 250);
+
+        assertEquals(List.of("b.json"), removed.entries());
+        assertEquals(List.of("sha-b"), removed.blobs());
+        assertEquals(200, index.bytes());
+    }
+
+    @Test
+    void keepsTheNewestEntryEvenAboveTheLimit() {
+        CacheIndex index = new CacheIndex();
+        index.put("a.json", new CacheIndex.Cached("sha-a", 10), 50);
+
+        CacheIndex.Removed removed = index.put("big.json", new CacheIndex.Cached("sha-big", 100), 50);
+
+        assertEquals(List.of("a.json"), removed.entries());
+        assertTrue(index.references("sha-big"));
+        assertEquals(100, index.bytes());
+    }
+}
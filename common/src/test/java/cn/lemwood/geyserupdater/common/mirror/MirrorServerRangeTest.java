@@ -0,0 +1,56 @@
+package cn.lemwood.geyserupdater.common.mirror;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class MirrorServerRangeTest {
+
+    @Test
+    void closedRange() {
+        assertArrayEquals(new long[]{0, 99}, MirrorServer.parseRange("bytes=0-99", 1000));
+        assertArrayEquals(new long[]{500, 500}, MirrorServer.parseRange("bytes=500-500", 1000));
+        assertArrayEquals(new long[]{10, 20}, MirrorServer.parseRange("bytes= 10 - 20 ", 1000));
+    }
+
+    @Test
+    void openEndedRangeRunsToTheLastByte() {
+        assertArrayEquals(new long[]{100, 999}, MirrorServer.parseRange("bytes=100-", 1000));
+    }
+
+    @Test
+    void endBeyondTheResourceIsClamped() {
+        assertArrayEquals(new long[]{900, 999}, MirrorServer.parseRange("bytes=900-5000", 1000));
+    }
+
+    @Test
+    void suffixRange() {
+        assertArrayEquals(new long[]{900, 999}, MirrorServer.parseRange("bytes=-100", 1000));
+        // A suffix longer than the resource means all of it
+        assertArrayEquals(new long[]{0, 999}, MirrorServer.parseRange("bytes=-5000", 1000));
+    }
+
+    @Test
+    void unsatisfiableRanges() {
+        assertSame(MirrorServer.UNSATISFIABLE, MirrorServer.parseRange("bytes=1000-", 1000));
+        assertSame(MirrorServer.UNSATISFIABLE, MirrorServer.parseRange("bytes=2000-3000", 1000));
+        assertSame(MirrorServer.UNSATISFIABLE, MirrorServer.parseRange("bytes=-0", 1000));
+        assertSame(MirrorServer.UNSATISFIABLE, MirrorServer.parseRange("bytes=0-", 0));
+        assertSame(MirrorServer.UNSATISFIABLE, MirrorServer.parseRange("bytes=-10", 0));
+    }
+
+    @Test
+    void headersItDoesNotUnderstandAreIgnored() {
+        assertNull(MirrorServer.parseRange("bytes=0-1,5-6", 1000));
+        assertNull(MirrorServer.parseRange("items=0-1", 1000));
+        assertNull(MirrorServer.parseRange("bytes=5", 1000));
+        assertNull(MirrorServer.parseRange("bytes=-", 1000));
+        assertNull(MirrorServer.parseRange("bytes=a-b", 1000));
+        assertNull(MirrorServer.parseRange("bytes=20-10", 1000));
+        assertNull(MirrorServer.parseRange("bytes=--5", 1000));
+        assertNull(MirrorServer.parseRange("bytes=+5-10", 1000));
+        assertNull(MirrorServer.parseRange("bytes=0-99999999999999999999", 1000));
+    }
+}
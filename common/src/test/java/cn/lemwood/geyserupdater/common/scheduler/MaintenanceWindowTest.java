@@ -0,0 +1,95 @@
+package cn.lemwood.geyserupdater.common.scheduler;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MaintenanceWindowTest {
+
+    // 2024-01-01 is a Monday
+    private static ZonedDateTime at(int day, int hour, int minute) {
+        return ZonedDateTime.of(2024, 1, day, hour, minute, 0, 0, ZoneOffset.UTC);
+    }
+
+    private static MaintenanceWindow window(String cron, long minutes) {
+        return new MaintenanceWindow(cron, Duration.ofMinutes(minutes));
+    }
+
+    @Test
+    void containsTheWholeDurationAndNothingAfter() {
+        MaintenanceWindow nightly = window("0 3 * * *", 120);
+        assertTrue(nightly.contains(at(1, 3, 0)));
+        assertTrue(nightly.contains(at(1, 4, 59).plusSeconds(30)));
+        assertFalse(nightly.contains(at(1, 5, 0)));
+        assertFalse(nightly.contains(at(1, 2, 59)));
+    }
+
+    @Test
+    void windowMayRunPastMidnight() {
+        MaintenanceWindow late = window("0 23 * * *", 120);
+        assertTrue(late.contains(at(2, 0, 30)));
+        assertFalse(late.contains(at(2, 1, 0)));
+    }
+
+    @Test
+    void nextStartIsStrictlyAfterTheGivenTime() {
+        MaintenanceWindow nightly = window("0 3 * * *", 60);
+        assertEquals(at(1, 3, 0), nightly.nextStart(at(1, 2, 10)));
+        assertEquals(at(2, 3, 0), nightly.nextStart(at(1, 3, 0)));
+    }
+
+    @Test
+    void nextStartSkipsExcludedWeekdays() {
+        // From Friday evening to Monday morning
+        assertEquals(at(8, 4, 30), window("30 4 * * 1-5", 60).nextStart(at(5, 5, 0)));
+    }
+
+    @Test
+    void sundayIsBothZeroAndSeven() {
+        assertEquals(at(7, 0, 0), window("0 0 * * 7", 60).nextStart(at(1, 12, 0)));
+        assertEquals(at(7, 0, 0), window("0 0 * * 0", 60).nextStart(at(1, 12, 0)));
+    }
+
+    @Test
+    void restrictedDayFieldsMatchEitherDay() {
+        // The first Friday comes before the 13th
+        assertEquals(at(5, 0, 0), window("0 0 13 * 5", 60).nextStart(at(1, 0, 0)));
+        assertEquals(at(13, 0, 0), window("0 0 13 * 5", 60).nextStart(at(12, 0, 0)));
+    }
+
+    @Test
+    void stepsAndRanges() {
+        assertEquals(at(1, 10, 15), window("*/15 * * * *", 5).nextStart(at(1, 10, 7)));
+        assertEquals(at(1, 0, 30), window("0-30/10 * * * *", 5).nextStart(at(1, 0, 21)));
+        assertEquals(at(1, 1, 0), window("0-30/10 * * * *", 5).nextStart(at(1, 0, 30)));
+        assertEquals(at(1, 6, 0), window("0 2,6 * * *", 5).nextStart(at(1, 2, 0)));
+    }
+
+    @Test
+    void nextStartRollsOverToALaterMonth() {
+        assertEquals(ZonedDateTime.of(2024, 3, 1, 0, 0, 0, 0, ZoneOffset.UTC),
+                window("0 0 1 3 *", 60).nextStart(at(15, 0, 0)));
+    }
+
+    @Test
+    void impossibleDateHasNoNextStart() {
+        assertNull(window("0 0 30 2 *", 60).nextStart(at(1, 0, 0)));
+    }
+
+    @Test
+    void rejectsMalformedExpressions() {
+        assertThrows(IllegalArgumentException.class, () -> window("0 3 * *", 60));
+        assertThrows(IllegalArgumentException.class, () -> window("60 3 * * *", 60));
+        assertThrows(IllegalArgumentException.class, () -> window("0 5-3 * * *", 60));
+        assertThrows(IllegalArgumentException.class, () -> window("0 x * * *", 60));
+        assertThrows(IllegalArgumentException.class, () -> window("0 3 * * *", 0));
+    }
+}
@@ -0,0 +1,74 @@
+package cn.lemwood.geyserupdater.common.version;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.OptionalInt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VersionTest {
+
+    private static int compare(String a, String b) {
+        OptionalInt order = Version.compare(Version.parse(a), Version.parse(b));
+        assertTrue(order.isPresent(), a + " and " + b + " should be comparable");
+        return Integer.signum(order.getAsInt());
+    }
+
+    @Test
+    void numbersCompareNumerically() {
+        assertEquals(1, compare("2.4.10", "2.4.9"));
+        assertEquals(-1, compare("1.9", "1.10.0"));
+        assertEquals(0, compare("2.4", "2.4.0"));
+        assertEquals(0, compare("v2.4.4", "2.4.4"));
+    }
+
+    @Test
+    void qualifiersRankBelowTheRelease() {
+        String[] ascending = {"2.0.0-alpha", "2.0.0-beta", "2.0.0-M1", "2.0.0-rc1", "2.0.0-rc2", "2.0.0-SNAPSHOT", "2.0.0"};
+        for (int i = 1; i < ascending.length; i++) {
+            assertEquals(-1, compare(ascending[i - 1], ascending[i]), ascending[i - 1] + " < " + ascending[i]);
+        }
+    }
+
+    @Test
+    void metadataAndUnknownQualifiersRankLikeARelease() {
+        assertEquals(0, compare("1.0.0+abc123", "1.0.0"));
+        assertEquals(0, compare("1.0.0-fabric", "1.0.0"));
+    }
+
+    @Test
+    void buildSuffixesOrderEqualNumbers() {
+        assertEquals(1, compare("2.4.4-b700", "2.4.4-b699"));
+        assertEquals(1, compare("2.4.4 (build 12)", "2.4.4 (build 9)"));
+        assertEquals(1, compare("2.4.5-b1", "2.4.4-b700"));
+    }
+
+    @Test
+    void equalBuildsAreTheSameArtifactWhateverTheLabel() {
+        assertEquals(0, compare("2.4.4-SNAPSHOT (b700)", "2.4.4-b700"));
+        assertFalse(Version.isNewer("2.4.4-SNAPSHOT (b700)", "2.4.4-b700"));
+    }
+
+    @Test
+    void bareBuildNumbersCompareAsBuilds() {
+        assertEquals(1, compare("700", "699"));
+        assertEquals(0, compare("700", "2.4.4-b700"));
+        assertEquals(0, Version.compare(Version.parse("2.4.4").withBuild(700), Version.parse("700")).getAsInt());
+    }
+
+    @Test
+    void bareBuildAgainstVersionWithoutBuildIsUnordered() {
+        assertTrue(Version.compare(Version.parse("700"), Version.parse("2.4.4")).isEmpty());
+        // Unordered leaves the decision to the checksum comparison
+        assertTrue(Version.isNewer("700", "2.4.4"));
+    }
+
+    @Test
+    void isNewerIsStrict() {
+        assertTrue(Version.isNewer("2.4.5", "2.4.4"));
+        assertFalse(Version.isNewer("2.4.4", "2.4.4"));
+        assertFalse(Version.isNewer("2.4.4-rc1", "2.4.4"));
+    }
+}
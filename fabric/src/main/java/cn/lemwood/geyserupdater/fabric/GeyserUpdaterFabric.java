@@ -1,6 +1,7 @@
 package cn.lemwood.geyserupdater.fabric;
 
 import cn.lemwood.geyserupdater.common.GeyserUpdaterCommon;
+import cn.lemwood.geyserupdater.common.index.DirectoryIndex;
 import cn.lemwood.geyserupdater.common.platform.PlatformAdapter;
 import net.fabricmc.api.ModInitializer;
 import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
@@ -16,9 +17,6 @@ import java.nio.file.Path;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
-import net.fabricmc.loader.api.Version;
-import net.fabricmc.loader.api.VersionParsingException;
-
 public class GeyserUpdaterFabric implements ModInitializer, PlatformAdapter {
     private static final Logger LOGGER = LoggerFactory.getLogger("GeyserUpdater");
     private final ExecutorService scheduler = Executors.newCachedThreadPool();
@@ -32,6 +30,10 @@ public class GeyserUpdaterFabric implements ModInitializer, PlatformAdapter {
         
         ServerLifecycleEvents.SERVER_STARTING.register(server -> this.server = server);
         ServerLifecycleEvents.SERVER_STOPPING.register(server -> this.server = null);
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+            common.onDisable();
+            scheduler.shutdown();
+        });
 
         CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) -> {
             dispatcher.register(literal("geyserupdater")
@@ -46,6 +48,14 @@ public class GeyserUpdaterFabric implements ModInitializer, PlatformAdapter {
                         return 1;
                     })
                 )
+                .then(literal("status")
+                    .executes(context -> {
+                        for (String line : common.getStatus()) {
+                            context.getSource().sendMessage(Text.of(line));
+                        }
+                        return 1;
+                    })
+                )
             );
         });
     }
@@ -106,35 +116,13 @@ public class GeyserUpdaterFabric implements ModInitializer, PlatformAdapter {
             }
         }
         
-        return null;
+        // Not loaded, e.g. dropped in since startup; the jar itself still knows its version
+        return readInstalledVersion(projectId);
     }
 
     @Override
-    public boolean compareVersion(String projectId, String remoteVersion) {
-        String[] possibleModIds = switch (projectId) {
-            case "geyser" -> new String[]{"geyser-fabric", "geyser", "Geyser"};
-            case "floodgate" -> new String[]{"floodgate", "Floodgate"};
-            case "geyserextras" -> new String[]{"geyserextras", "GeyserExtras"};
-            default -> new String[]{projectId};
-        };
-        
-        for (String modId : possibleModIds) {
-            var container = FabricLoader.getInstance().getModContainer(modId);
-            if (container.isPresent()) {
-                try {
-                    Version current = container.get().getMetadata().getVersion();
-                    Version remote = Version.parse(remoteVersion);
-                    return current.compareTo(remote) < 0; // Update if current < remote
-                } catch (VersionParsingException e) {
-                    // Fallback to string comparison if parsing fails
-                    return !container.get().getMetadata().getVersion().getFriendlyString().equals(remoteVersion);
-                } catch (Exception e) {
-                    return true;
-                }
-            }
-        }
-        
-        return true; // Not found, assume update needed
+    public DirectoryIndex getDirectoryIndex() {
+        return common != null ? common.getDirectoryIndex() : null;
     }
 
     @Override
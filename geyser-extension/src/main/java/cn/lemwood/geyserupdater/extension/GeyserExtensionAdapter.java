@@ -1,5 +1,6 @@
 package cn.lemwood.geyserupdater.extension;
 
+import cn.lemwood.geyserupdater.common.index.DirectoryIndex;
 import cn.lemwood.geyserupdater.common.platform.PlatformAdapter;
 import org.geysermc.geyser.api.extension.Extension;
 
@@ -64,16 +65,13 @@ public class GeyserExtensionAdapter implements PlatformAdapter {
 
     @Override
     public String getInstalledVersion(String projectId) {
-        // 目前无法轻易获取 Geyser Standalone 的确切版本号（API限制）
-        // 返回 null 将触发更新检查
-        return null;
+        // 目前无法通过 API 获取 Geyser Standalone 的确切版本号，改为从 jar 内的描述文件读取
+        return readInstalledVersion(projectId);
     }
 
     @Override
-    public boolean compareVersion(String projectId, String remoteVersion) {
-        // For Geyser Standalone, we don't have a reliable way to get installed version.
-        // So we always return true to force a hash check.
-        return true;
+    public DirectoryIndex getDirectoryIndex() {
+        return extension instanceof GeyserUpdaterExtension updater ? updater.getDirectoryIndex() : null;
     }
 
     @Override
@@ -1,10 +1,12 @@
 package cn.lemwood.geyserupdater.extension;
 
 import cn.lemwood.geyserupdater.common.GeyserUpdaterCommon;
+import cn.lemwood.geyserupdater.common.index.DirectoryIndex;
 import cn.lemwood.geyserupdater.common.platform.PlatformAdapter;
 import org.geysermc.geyser.api.GeyserApi;
 import org.geysermc.event.subscribe.Subscribe;
 import org.geysermc.geyser.api.event.lifecycle.GeyserPostInitializeEvent;
+import org.geysermc.geyser.api.event.lifecycle.GeyserShutdownEvent;
 import org.geysermc.geyser.api.extension.Extension;
 
 import org.geysermc.geyser.api.util.PlatformType;
@@ -43,4 +45,15 @@ public class GeyserUpdaterExtension implements Extension {
         common = new GeyserUpdaterCommon(adapter, new String[]{"geyser", "geyserextras"});
         common.onEnable();
     }
+
+    DirectoryIndex getDirectoryIndex() {
+        return common != null ? common.getDirectoryIndex() : null;
+    }
+
+    @Subscribe
+    public void onShutdown(GeyserShutdownEvent event) {
+        if (common != null) {
+            common.onDisable();
+        }
+    }
 }
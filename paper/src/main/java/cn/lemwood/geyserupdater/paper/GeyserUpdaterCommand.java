@@ -27,6 +27,13 @@ public class GeyserUpdaterCommand implements CommandExecutor {
             return true;
         }
 
+        if (args.length > 0 && args[0].equalsIgnoreCase("status")) {
+            for (String line : common.getStatus()) {
+                sender.sendMessage(line);
+            }
+            return true;
+        }
+
         sender.sendMessage(common.getConfig().getMessage("usage").replace("&", "§"));
         return true;
     }
@@ -1,6 +1,7 @@
 package cn.lemwood.geyserupdater.paper;
 
 import cn.lemwood.geyserupdater.common.GeyserUpdaterCommon;
+import cn.lemwood.geyserupdater.common.index.DirectoryIndex;
 import cn.lemwood.geyserupdater.common.platform.PlatformAdapter;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.plugin.Plugin;
@@ -20,6 +21,13 @@ public class GeyserUpdaterPaper extends JavaPlugin implements PlatformAdapter {
         }
     }
 
+    @Override
+    public void onDisable() {
+        if (common != null) {
+            common.onDisable();
+        }
+    }
+
     @Override
     public Path getDataDirectory() {
         return getDataFolder().toPath();
@@ -96,17 +104,19 @@ public class GeyserUpdaterPaper extends JavaPlugin implements PlatformAdapter {
             }
         }
         
-        return null;
+        // Not loaded, e.g. dropped in since startup; the jar itself still knows its version
+        return readInstalledVersion(projectId);
+    }
+
+    @Override
+    public boolean replacesJarsByRename() {
+        // Bukkit applies the update folder by copying each jar over the installed one
+        return false;
     }
 
     @Override
-    public boolean compareVersion(String projectId, String remoteVersion) {
-        // Bukkit versions are strings and often contain build numbers or custom formats.
-        // Simple string equality is usually the safest unless we parse SemVer.
-        // But remoteVersion from Modrinth might be "2.2.0" while local is "2.2.0-SNAPSHOT".
-        // We can assume update needed if strings don't match.
-        // Default implementation does exactly this.
-        return PlatformAdapter.super.compareVersion(projectId, remoteVersion);
+    public DirectoryIndex getDirectoryIndex() {
+        return common != null ? common.getDirectoryIndex() : null;
     }
 
     @Override
@@ -29,6 +29,13 @@ public class GeyserUpdaterCommand implements SimpleCommand {
             return;
         }
 
+        if (args.length > 0 && args[0].equalsIgnoreCase("status")) {
+            for (String line : common.getStatus()) {
+                source.sendMessage(Component.text(line));
+            }
+            return;
+        }
+
         source.sendMessage(Component.text(common.getConfig().getMessage("usage").replace("&", "§")));
     }
 }
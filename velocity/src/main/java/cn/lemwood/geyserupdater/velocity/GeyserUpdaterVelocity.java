@@ -1,9 +1,11 @@
 package cn.lemwood.geyserupdater.velocity;
 
 import cn.lemwood.geyserupdater.common.GeyserUpdaterCommon;
+import cn.lemwood.geyserupdater.common.index.DirectoryIndex;
 import cn.lemwood.geyserupdater.common.platform.PlatformAdapter;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
+import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
 import com.velocitypowered.api.plugin.Plugin;
 import com.velocitypowered.api.plugin.annotation.DataDirectory;
 import com.velocitypowered.api.proxy.ProxyServer;
@@ -43,6 +45,13 @@ public class GeyserUpdaterVelocity implements PlatformAdapter {
         );
     }
 
+    @Subscribe
+    public void onProxyShutdown(ProxyShutdownEvent event) {
+        if (common != null) {
+            common.onDisable();
+        }
+    }
+
     @Override
     public Path getDataDirectory() {
         return dataDirectory;
@@ -99,14 +108,13 @@ public class GeyserUpdaterVelocity implements PlatformAdapter {
             }
         }
         
-        return null;
+        // Not loaded, e.g. dropped in since startup; the jar itself still knows its version
+        return readInstalledVersion(projectId);
     }
 
     @Override
-    public boolean compareVersion(String projectId, String remoteVersion) {
-        // Velocity uses String for versions mostly, but can handle SemVer in description.
-        // For now, string equality is safe.
-        return PlatformAdapter.super.compareVersion(projectId, remoteVersion);
+    public DirectoryIndex getDirectoryIndex() {
+        return common != null ? common.getDirectoryIndex() : null;
     }
 
     @Override
@@ -1,6 +1,7 @@
 package cn.lemwood.geyserupdater.viaproxy;
 
 import cn.lemwood.geyserupdater.common.GeyserUpdaterCommon;
+import cn.lemwood.geyserupdater.common.index.DirectoryIndex;
 import cn.lemwood.geyserupdater.common.platform.PlatformAdapter;
 import net.raphimc.viaproxy.ViaProxy;
 import net.raphimc.viaproxy.plugins.ViaProxyPlugin;
@@ -28,6 +29,14 @@ public class GeyserUpdaterViaProxy extends ViaProxyPlugin implements PlatformAda
         info(common.getConfig().getMessage("viaproxy-loaded"));
     }
 
+    @Override
+    public void onDisable() {
+        if (common != null) {
+            common.onDisable();
+        }
+        scheduler.shutdown();
+    }
+
     @Override
     public Path getDataDirectory() {
         // ViaProxyPlugin likely has getDataFolder() which returns File.
@@ -106,12 +115,13 @@ public class GeyserUpdaterViaProxy extends ViaProxyPlugin implements PlatformAda
                 warn("Failed to get installed version for " + projectId + ": " + e.getMessage());
             }
         }
-        return null;
+        // Not loaded, e.g. dropped in since startup; the jar itself still knows its version
+        return readInstalledVersion(projectId);
     }        
 
     @Override
-    public boolean compareVersion(String projectId, String remoteVersion) {
-        return PlatformAdapter.super.compareVersion(projectId, remoteVersion);
+    public DirectoryIndex getDirectoryIndex() {
+        return common != null ? common.getDirectoryIndex() : null;
     }
 
     @Override